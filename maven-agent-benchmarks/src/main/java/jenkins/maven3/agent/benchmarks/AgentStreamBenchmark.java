@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.benchmarks;
+
+import jenkins.maven3.agent.commons.AgentAddress;
+import jenkins.maven3.agent.commons.AgentConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes console output to a loopback "master" through the output stream the agent mains
+ * hand to remoting. The transport options of {@link AgentConnection} are read once per JVM,
+ * so each subclass runs in a fork with its own set.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public abstract class AgentStreamBenchmark {
+
+    @Param({"64", "1024", "65536"})
+    public int writeSize;
+
+    /**
+     * Flush after this many writes, like remoting does after each command. 0 never flushes.
+     */
+    @Param({"1", "16", "0"})
+    public int flushEvery;
+
+    private LoopbackSink sink;
+
+    /**
+     * Closed after the stream, if set by {@link #openStream(AgentAddress)}.
+     */
+    protected Closeable connection;
+
+    private OutputStream out;
+
+    private byte[] payload;
+
+    private int writes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        payload = BuildLogs.sample(writeSize);
+        sink = openSink();
+        out = openStream(sink.getAddress());
+    }
+
+    protected LoopbackSink openSink() throws IOException {
+        return LoopbackSink.tcp();
+    }
+
+    protected OutputStream openStream(AgentAddress address) throws IOException {
+        AgentConnection c = AgentConnection.open(address);
+        connection = c;
+        return c.getOutputStream();
+    }
+
+    /**
+     * Throughput in writes of {@link #writeSize} bytes per second.
+     */
+    @Benchmark
+    public void write() throws IOException {
+        out.write(payload);
+        if (flushEvery > 0 && ++writes % flushEvery == 0) {
+            out.flush();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        out.close();
+        sink.close();
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Defaults: plain socket streams with 8 KiB buffers.
+     */
+    @Fork(1)
+    public static class PlainTcp extends AgentStreamBenchmark {
+    }
+
+    @Fork(value = 1, jvmArgsAppend = {"-Djenkins.maven3.agent.transport.nio=true",
+            "-Djenkins.maven3.agent.transport.tcpNoDelay=true"})
+    public static class NioTcp extends AgentStreamBenchmark {
+    }
+
+    @Fork(value = 1, jvmArgsAppend = "-Djenkins.maven3.agent.transport.bufferSize=65536")
+    public static class LargeBuffers extends AgentStreamBenchmark {
+    }
+
+    /**
+     * Needs Java 16 or later.
+     */
+    @Fork(1)
+    public static class UnixSocket extends AgentStreamBenchmark {
+        @Override
+        protected LoopbackSink openSink() throws IOException {
+            return LoopbackSink.unix();
+        }
+    }
+
+    @Fork(value = 1, jvmArgsAppend = "-Djenkins.maven3.agent.transport.coalesce.maxDelay=2")
+    public static class Coalescing extends AgentStreamBenchmark {
+    }
+
+    @Fork(value = 1, jvmArgsAppend = "-Djenkins.maven3.agent.transport.async=block")
+    public static class Async extends AgentStreamBenchmark {
+    }
+
+    @Fork(value = 1, jvmArgsAppend = "-Djenkins.maven3.agent.transport.compression=deflate")
+    public static class Deflate extends AgentStreamBenchmark {
+        @Override
+        protected LoopbackSink openSink() throws IOException {
+            return LoopbackSink.tcp(true);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.benchmarks;
+
+import jenkins.maven3.agent.commons.CompressedStreams;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compresses a build log the way the remoting link does with
+ * {@code jenkins.maven3.agent.transport.compression=deflate}: line by line, with a sync flush
+ * every so many lines. The raw and compressed byte counts end up next to the throughput in
+ * the results, so the ratio can be read off them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BuildLogCompressionBenchmark {
+
+    /**
+     * Lines written between flushes.
+     */
+    @Param({"1", "20", "1000"})
+    public int flushEvery;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private byte[] log;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long raw;
+        public long compressed;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        log = BuildLogs.load();
+    }
+
+    /**
+     * Throughput in whole logs per second.
+     */
+    @Benchmark
+    public void compressLog(final Bytes bytes) throws IOException {
+        OutputStream counter = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.compressed++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytes.compressed += len;
+            }
+        };
+        OutputStream out = CompressedStreams.compress(CompressedStreams.DEFLATE, counter, 8192, level);
+        int lines = 0;
+        int start = 0;
+        for (int i = 0; i < log.length; i++) {
+            if (log[i] == '\n') {
+                out.write(log, start, i + 1 - start);
+                start = i + 1;
+                if (++lines % flushEvery == 0) {
+                    out.flush();
+                }
+            }
+        }
+        out.write(log, start, log.length - start);
+        out.close();
+        bytes.raw += log.length;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Console output to push through the streams. A real log can be given with
+ * {@code -Dbenchmark.buildLog=/path/to/log}, otherwise one is made up from the lines
+ * a reactor build typically prints.
+ */
+final class BuildLogs {
+
+    private static final int GENERATED_SIZE = 4 * 1024 * 1024;
+
+    private static final String[] MODULES = {"core", "api", "web", "persistence", "reporting", "cli"};
+
+    private static final String[] PLUGINS = {
+        "maven-resources-plugin:2.6:resources (default-resources)",
+        "maven-compiler-plugin:3.8.1:compile (default-compile)",
+        "maven-resources-plugin:2.6:testResources (default-testResources)",
+        "maven-compiler-plugin:3.8.1:testCompile (default-testCompile)",
+        "maven-surefire-plugin:2.22.2:test (default-test)",
+        "maven-jar-plugin:3.2.0:jar (default-jar)",
+    };
+
+    private BuildLogs() {
+    }
+
+    static byte[] load() throws IOException {
+        String file = System.getProperty("benchmark.buildLog");
+        if (file != null) {
+            return Files.readAllBytes(new File(file).toPath());
+        }
+        return generate(GENERATED_SIZE);
+    }
+
+    /**
+     * The first {@code size} bytes of the log, repeated if the log is shorter.
+     */
+    static byte[] sample(int size) throws IOException {
+        byte[] log = load();
+        byte[] r = new byte[size];
+        for (int i = 0; i < size; i += log.length) {
+            System.arraycopy(log, 0, r, i, Math.min(log.length, size - i));
+        }
+        return r;
+    }
+
+    private static byte[] generate(int size) {
+        Random random = new Random(42);
+        StringBuilder log = new StringBuilder();
+        while (log.length() < size) {
+            String module = MODULES[random.nextInt(MODULES.length)];
+            log.append("[INFO] \n[INFO] ------------------< org.example:").append(module)
+                    .append(" >------------------\n[INFO] Building ").append(module)
+                    .append(" 1.0-SNAPSHOT\n[INFO] --------------------------------[ jar ]---------------------------------\n");
+            for (String plugin : PLUGINS) {
+                log.append("[INFO] \n[INFO] --- ").append(plugin).append(" @ ").append(module).append(" ---\n");
+                if (plugin.contains("compile")) {
+                    log.append("[INFO] Changes detected - recompiling the module!\n[INFO] Compiling ")
+                            .append(1 + random.nextInt(400)).append(" source files to /home/jenkins/workspace/")
+                            .append(module).append("/target/classes\n");
+                } else if (plugin.contains("surefire")) {
+                    log.append("[INFO] \n[INFO] -------------------------------------------------------\n")
+                            .append("[INFO]  T E S T S\n[INFO] -------------------------------------------------------\n");
+                    int classes = 5 + random.nextInt(30);
+                    for (int i = 0; i < classes; i++) {
+                        String test = "org.example." + module + ".Component" + random.nextInt(1000) + "Test";
+                        log.append("[INFO] Running ").append(test).append('\n')
+                                .append("[INFO] Tests run: ").append(1 + random.nextInt(40))
+                                .append(", Failures: 0, Errors: 0, Skipped: ").append(random.nextInt(2))
+                                .append(", Time elapsed: ").append(random.nextInt(5)).append('.')
+                                .append(random.nextInt(1000)).append(" s - in ").append(test).append('\n');
+                    }
+                } else {
+                    log.append("[INFO] Copying ").append(random.nextInt(50)).append(" resources\n");
+                }
+            }
+        }
+        return Arrays.copyOf(log.toString().getBytes(StandardCharsets.UTF_8), size);
+    }
+}
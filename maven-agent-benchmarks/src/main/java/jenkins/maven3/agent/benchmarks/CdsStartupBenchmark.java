@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.benchmarks;
+
+import jenkins.maven3.agent.commons.CdsArchive;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time of a JVM that boots Maven through classworlds, the way the agent JVMs do,
+ * with and without the class data sharing archive from {@link CdsArchive}.
+ *
+ * <p>
+ * Needs a Maven installation, given with {@code -Dbenchmark.m2Home} or {@code M2_HOME}, and
+ * JDK 13 or later for the archive.
+ * </p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CdsStartupBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cds;
+
+    private List<String> command;
+
+    private File output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String m2 = System.getProperty("benchmark.m2Home", System.getenv("M2_HOME"));
+        if (m2 == null) {
+            throw new IllegalStateException("Point -Dbenchmark.m2Home to a Maven installation");
+        }
+        File m2Home = new File(m2);
+        File[] boot = new File(m2Home, "boot").listFiles(new FileFilter() {
+            public boolean accept(File f) {
+                return f.getName().startsWith("plexus-classworlds") && f.getName().endsWith(".jar");
+            }
+        });
+        if (boot == null || boot.length == 0) {
+            throw new IllegalStateException("No classworlds jar in " + m2Home);
+        }
+        File javaHome = new File(System.getProperty("java.home"));
+        output = File.createTempFile("cds-startup", ".log");
+
+        List<String> options = new ArrayList<String>();
+        if (cds) {
+            CdsArchive archive = CdsArchive.of(javaHome, m2Home, boot[0]);
+            if (!archive.isSupported()) {
+                throw new IllegalStateException("Class data sharing archives need JDK 13 or later");
+            }
+            if (!archive.getFile().isFile()) {
+                // the first run records the archive
+                run(commandLine(javaHome, m2Home, boot[0], archive.getJvmOptions()));
+            }
+            options = archive.getJvmOptions();
+        }
+        command = commandLine(javaHome, m2Home, boot[0], options);
+    }
+
+    private static List<String> commandLine(File javaHome, File m2Home, File boot, List<String> options) {
+        List<String> c = new ArrayList<String>();
+        c.add(new File(javaHome, "bin/java").getPath());
+        c.addAll(options);
+        c.add("-cp");
+        c.add(boot.getPath());
+        c.add("-Dclassworlds.conf=" + new File(m2Home, "bin/m2.conf").getPath());
+        c.add("-Dmaven.home=" + m2Home.getPath());
+        c.add("org.codehaus.plexus.classworlds.launcher.Launcher");
+        c.add("--version");
+        return c;
+    }
+
+    private int run(List<String> c) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(c).redirectErrorStream(true).redirectOutput(output).start();
+        int exit = p.waitFor();
+        if (exit != 0) {
+            throw new IllegalStateException(c + " exited with " + exit + ", see " + output);
+        }
+        return exit;
+    }
+
+    @Benchmark
+    public int startMaven() throws Exception {
+        return run(command);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        output.delete();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.benchmarks;
+
+import jenkins.maven3.agent.commons.AgentAddress;
+import jenkins.maven3.agent.commons.CompressedStreams;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ProtocolFamily;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Stands in for the master: accepts one connection and reads everything sent over it.
+ */
+final class LoopbackSink implements Closeable {
+
+    private final AgentAddress address;
+
+    private final Closeable server;
+
+    private final Thread reader;
+
+    private volatile long received;
+
+    private LoopbackSink(AgentAddress address, Closeable server, Thread reader) {
+        this.address = address;
+        this.server = server;
+        this.reader = reader;
+    }
+
+    static LoopbackSink tcp() throws IOException {
+        return tcp(false);
+    }
+
+    /**
+     * @param acceptCompression
+     *            Whether to accept the compression the agent offers, see {@link CompressedStreams}.
+     */
+    static LoopbackSink tcp(final boolean acceptCompression) throws IOException {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final LoopbackSink[] sink = new LoopbackSink[1];
+        Thread reader = new Thread("loopback sink") {
+            @Override
+            public void run() {
+                try (Socket s = server.accept(); InputStream in = s.getInputStream()) {
+                    if (acceptCompression) {
+                        OutputStream out = s.getOutputStream();
+                        out.write(CompressedStreams.ACK);
+                        out.flush();
+                    }
+                    byte[] buf = new byte[64 * 1024];
+                    int n;
+                    while ((n = in.read(buf)) >= 0) {
+                        sink[0].received += n;
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        };
+        sink[0] = new LoopbackSink(AgentAddress.tcp(InetAddress.getLoopbackAddress().getHostAddress(),
+                server.getLocalPort()), server, reader);
+        reader.setDaemon(true);
+        reader.start();
+        return sink[0];
+    }
+
+    /**
+     * Needs Java 16 or later, like the agent side.
+     */
+    static LoopbackSink unix() throws IOException {
+        File path = File.createTempFile("agent-benchmark", ".sock");
+        path.delete();
+        path.deleteOnExit();
+        final ServerSocketChannel server;
+        try {
+            SocketAddress local = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", String.class).invoke(null, path.getPath());
+            server = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                    .invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+            server.bind(local);
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new IOException("Unix domain sockets need Java 16 or later", e);
+        }
+        final LoopbackSink[] sink = new LoopbackSink[1];
+        Thread reader = new Thread("loopback sink") {
+            @Override
+            public void run() {
+                try (SocketChannel s = server.accept()) {
+                    ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+                    int n;
+                    while ((n = s.read(buf)) >= 0) {
+                        sink[0].received += n;
+                        buf.clear();
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        };
+        sink[0] = new LoopbackSink(AgentAddress.parse("unix:" + path.getPath()), server, reader);
+        reader.setDaemon(true);
+        reader.start();
+        return sink[0];
+    }
+
+    AgentAddress getAddress() {
+        return address;
+    }
+
+    long getReceived() {
+        return received;
+    }
+
+    /**
+     * Waits until the agent side has closed its output and everything has been read.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.join(10000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.close();
+    }
+}
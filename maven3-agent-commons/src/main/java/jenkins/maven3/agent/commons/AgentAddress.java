@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.File;
+
+/**
+ * Where the agent finds the master it connects to.
+ *
+ * <p>
+ * Parsed from the address argument of the agent mains, which is one of
+ * </p>
+ * <ul>
+ *   <li>{@code port}, for a TCP port on the local host,</li>
+ *   <li>{@code host:port},</li>
+ *   <li>{@code unix:/path/to/socket}, for an AF_UNIX socket when master and agent share a host,
+ *       optionally followed by {@code ,port} or {@code ,host:port} to fall back to when this JVM
+ *       or OS can't do Unix domain sockets. A comma is taken for part of the path if what
+ *       follows it isn't a port, or if the socket exists under the whole path.</li>
+ * </ul>
+ *
+ * @since 1.15
+ */
+public final class AgentAddress {
+
+    private static final String UNIX_PREFIX = "unix:";
+
+    private final String host;
+
+    private final int port;
+
+    private final String unixPath;
+
+    private final AgentAddress fallback;
+
+    private AgentAddress(String host, int port, String unixPath, AgentAddress fallback) {
+        this.host = host;
+        this.port = port;
+        this.unixPath = unixPath;
+        this.fallback = fallback;
+    }
+
+    /**
+     * @param host
+     *            null for the local host.
+     */
+    public static AgentAddress tcp(String host, int port) {
+        return new AgentAddress(host, port, null, null);
+    }
+
+    @SuppressFBWarnings("PATH_TRAVERSAL_IN")
+    public static AgentAddress parse(String address) {
+        if (address.startsWith(UNIX_PREFIX)) {
+            String path = address.substring(UNIX_PREFIX.length());
+            AgentAddress fallback = null;
+            int comma = path.lastIndexOf(',');
+            if (comma > 0 && !new File(path).exists()) {
+                try {
+                    fallback = parseTcp(path.substring(comma + 1));
+                    path = path.substring(0, comma);
+                } catch (NumberFormatException e) {
+                    // a comma in the path itself
+                }
+            }
+            return new AgentAddress(null, -1, path, fallback);
+        }
+        return parseTcp(address);
+    }
+
+    private static AgentAddress parseTcp(String address) {
+        int i = address.lastIndexOf(':');
+        if (i > 0) {
+            return tcp(address.substring(0, i), Integer.parseInt(address.substring(i + 1)));
+        }
+        return tcp(null, Integer.parseInt(address));
+    }
+
+    public boolean isUnix() {
+        return unixPath != null;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUnixPath() {
+        return unixPath;
+    }
+
+    /**
+     * TCP address to use when the Unix domain socket can't be used, or null.
+     */
+    public AgentAddress getFallback() {
+        return fallback;
+    }
+
+    @Override
+    public String toString() {
+        if (isUnix()) {
+            return UNIX_PREFIX + unixPath + (fallback != null ? "," + fallback : "");
+        }
+        return host != null ? host + ':' + port : Integer.toString(port);
+    }
+}
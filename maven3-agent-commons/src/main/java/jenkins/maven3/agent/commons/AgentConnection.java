@@ -0,0 +1,564 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection from the agent to the master, which the remoting channel runs over.
+ *
+ * <p>
+ * Closing one of the streams only shuts down that direction of the connection, since
+ * remoting closes its input and output independently of each other. Both streams are
+ * buffered already.
+ * </p>
+ *
+ * <p>
+ * The transport can be tuned with these system properties:
+ * </p>
+ * <ul>
+ *   <li>{@code jenkins.maven3.agent.transport.nio}: run TCP over a {@link SocketChannel}
+ *       with direct buffers instead of the classic socket streams,</li>
+ *   <li>{@code jenkins.maven3.agent.transport.bufferSize}: size of the stream buffers, 8 KiB by default,</li>
+ *   <li>{@code jenkins.maven3.agent.transport.tcpNoDelay}: {@code true} or {@code false} to
+ *       set {@code TCP_NODELAY}, left to the OS when not set,</li>
+ *   <li>{@code jenkins.maven3.agent.transport.sendBufferSize} and
+ *       {@code jenkins.maven3.agent.transport.receiveBufferSize}: {@code SO_SNDBUF} and
+ *       {@code SO_RCVBUF}, left to the OS when not set,</li>
+ *   <li>{@code jenkins.maven3.agent.transport.compression}: codec to offer the master to compress
+ *       both directions with, see {@link CompressedStreams}. The streams stay plain unless the
+ *       master accepts it,</li>
+ *   <li>{@code jenkins.maven3.agent.transport.coalesce.maxDelay}: longest time in milliseconds
+ *       a flush to the master may be held back to coalesce it with others, 0 by default,</li>
+ *   <li>{@code jenkins.maven3.agent.transport.coalesce.threshold}: number of bytes that are
+ *       written out regardless of flushes, the buffer size by default,</li>
+ *   <li>{@code jenkins.maven3.agent.transport.async}: {@code block} or {@code spill} to write to the
+ *       master from a separate thread, see {@link AsyncOutputStream}, with a buffer of
+ *       {@code jenkins.maven3.agent.transport.async.capacity} bytes, 1 MiB by default,</li>
+ *   <li>{@code jenkins.maven3.agent.transport.metrics}: count the traffic, see {@link TransportMetrics}.</li>
+ * </ul>
+ *
+ * @since 1.15
+ */
+public abstract class AgentConnection implements Closeable {
+
+    private static final String PROPERTY_PREFIX = "jenkins.maven3.agent.transport.";
+
+    private static final boolean NIO = Boolean.getBoolean(PROPERTY_PREFIX + "nio");
+
+    private static final String TCP_NO_DELAY = System.getProperty(PROPERTY_PREFIX + "tcpNoDelay");
+
+    private static final int SEND_BUFFER_SIZE = Integer.getInteger(PROPERTY_PREFIX + "sendBufferSize", 0);
+
+    private static final int RECEIVE_BUFFER_SIZE = Integer.getInteger(PROPERTY_PREFIX + "receiveBufferSize", 0);
+
+    private static final String COMPRESSION = System.getProperty(PROPERTY_PREFIX + "compression");
+
+    private static final String ASYNC = System.getProperty(PROPERTY_PREFIX + "async");
+
+    private static final int ASYNC_CAPACITY = Integer.getInteger(PROPERTY_PREFIX + "async.capacity", 1024 * 1024);
+
+    private static final long COALESCE_MAX_DELAY = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong(PROPERTY_PREFIX + "coalesce.maxDelay", 0));
+
+    /**
+     * A daemon agent serves one session at a time, which takes one buffer per direction.
+     */
+    private static final BufferPool BUFFERS = new BufferPool(
+            Math.max(Integer.getInteger(PROPERTY_PREFIX + "bufferSize", 8192), 512), 2);
+
+    private static final int COALESCE_THRESHOLD = Integer.getInteger(PROPERTY_PREFIX + "coalesce.threshold",
+            BUFFERS.getBufferSize());
+
+    private long connectTime;
+
+    private InputStream in;
+
+    private OutputStream out;
+
+    /**
+     * Compression the master agreed to, null for none.
+     */
+    private String codec;
+
+    /**
+     * Connects to the given address. A Unix domain socket address falls back to its TCP
+     * address, if it has one, when this JVM can't do Unix domain sockets or the connection fails.
+     */
+    public static AgentConnection open(AgentAddress address) throws IOException {
+        long start = System.nanoTime();
+        AgentConnection connection = connect(address);
+        connection.connectTime = System.nanoTime() - start;
+        RttEstimator.get().seed(connection.connectTime);
+        return connection;
+    }
+
+    private static AgentConnection connect(AgentAddress address) throws IOException {
+        if (address.isUnix()) {
+            try {
+                return new ChannelConnection(openUnixChannel(address.getUnixPath()));
+            } catch (IOException | UnsupportedOperationException e) {
+                if (address.getFallback() == null) {
+                    throw e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+                System.err.println("Failed to connect to " + address.getUnixPath() + ", falling back to TCP: " + e);
+                return connect(address.getFallback());
+            }
+        }
+        // SO_RCVBUF has to be in place before connecting for the TCP window to scale to it
+        SocketAddress remote = new InetSocketAddress(InetAddress.getByName(address.getHost()), address.getPort());
+        if (NIO) {
+            return new ChannelConnection(openTcpChannel(remote));
+        }
+        Socket socket = newSocket();
+        try {
+            configure(socket);
+            socket.connect(remote);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return new TcpConnection(socket);
+    }
+
+    /**
+     * Opens a bare channel to the given address, for transfers that bypass the streams,
+     * with the same socket options and Unix domain socket fallback as {@link #open(AgentAddress)}.
+     */
+    static SocketChannel openChannel(AgentAddress address) throws IOException {
+        if (address.isUnix()) {
+            try {
+                return openUnixChannel(address.getUnixPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                if (address.getFallback() == null) {
+                    throw e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+                return openChannel(address.getFallback());
+            }
+        }
+        return openTcpChannel(new InetSocketAddress(InetAddress.getByName(address.getHost()), address.getPort()));
+    }
+
+    private static SocketChannel openTcpChannel(SocketAddress remote) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            configure(channel);
+            channel.connect(remote);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Wraps an already connected TCP socket, such as one accepted by the agent itself.
+     */
+    public static AgentConnection of(Socket socket) throws IOException {
+        configure(socket);
+        return new TcpConnection(socket);
+    }
+
+    @SuppressFBWarnings("UNENCRYPTED_SOCKET")
+    private static Socket newSocket() {
+        return new Socket();
+    }
+
+    private static void configure(Socket socket) throws IOException {
+        if (TCP_NO_DELAY != null) {
+            socket.setTcpNoDelay(Boolean.parseBoolean(TCP_NO_DELAY));
+        }
+        if (SEND_BUFFER_SIZE > 0) {
+            socket.setSendBufferSize(SEND_BUFFER_SIZE);
+        }
+        if (RECEIVE_BUFFER_SIZE > 0) {
+            socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Unix domain channels have no {@code TCP_NODELAY}, so only what the channel supports is set.
+     */
+    private static void configure(SocketChannel channel) throws IOException {
+        if (TCP_NO_DELAY != null) {
+            setOption(channel, StandardSocketOptions.TCP_NODELAY, Boolean.parseBoolean(TCP_NO_DELAY));
+        }
+        if (SEND_BUFFER_SIZE > 0) {
+            setOption(channel, StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_SIZE);
+        }
+        if (RECEIVE_BUFFER_SIZE > 0) {
+            setOption(channel, StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE);
+        }
+    }
+
+    private static <T> void setOption(SocketChannel channel, SocketOption<T> option, T value) throws IOException {
+        if (channel.supportedOptions().contains(option)) {
+            channel.setOption(option, value);
+        }
+    }
+
+    /**
+     * Stream of the bytes the master sends. Closing it shuts down the input side.
+     */
+    public InputStream getInputStream() throws IOException {
+        InputStream in = handshake();
+        if (codec != null) {
+            in = CompressedStreams.decompress(codec, in, BUFFERS.getBufferSize());
+        }
+        TransportMetrics metrics = TransportMetrics.get();
+        return metrics != null ? metrics.wrap(in) : in;
+    }
+
+    /**
+     * Stream to the master. Closing it shuts down the output side. Flushes may be coalesced,
+     * see {@link CoalescingOutputStream}.
+     */
+    public OutputStream getOutputStream() throws IOException {
+        handshake();
+        OutputStream out = this.out;
+        if (codec != null) {
+            out = CompressedStreams.compress(codec, out, BUFFERS.getBufferSize());
+        }
+        out = new CoalescingOutputStream(out, COALESCE_THRESHOLD, COALESCE_MAX_DELAY, RttEstimator.get());
+        TransportMetrics metrics = TransportMetrics.get();
+        if (ASYNC != null) {
+            if (metrics != null) {
+                out = metrics.wrapSocketSide(out);
+            }
+            out = new AsyncOutputStream(out, ASYNC_CAPACITY, AsyncOutputStream.OverflowPolicy.parse(ASYNC), metrics);
+        }
+        return metrics != null ? metrics.wrap(out) : out;
+    }
+
+    /**
+     * Opens the raw streams and, if compression is configured, agrees on it with the master
+     * before either stream is handed out.
+     *
+     * @return the raw input stream.
+     */
+    private synchronized InputStream handshake() throws IOException {
+        if (in == null) {
+            InputStream in = openInputStream();
+            out = openOutputStream();
+            if (COMPRESSION != null) {
+                PushbackInputStream pushback = new PushbackInputStream(in, 1);
+                codec = CompressedStreams.negotiate(COMPRESSION, pushback, out);
+                in = pushback;
+            }
+            this.in = in;
+        }
+        return in;
+    }
+
+    /**
+     * How long in nanoseconds opening the connection took, which is about one round trip
+     * for TCP. 0 if the connection wasn't opened by this class.
+     */
+    public long getConnectTime() {
+        return connectTime;
+    }
+
+    /**
+     * Buffered stream of the raw bytes from the connection, with half-close semantics.
+     */
+    abstract InputStream openInputStream() throws IOException;
+
+    /**
+     * Stream of the raw bytes to the connection, with half-close semantics. Not buffered
+     * beyond what the connection itself needs, {@link #getOutputStream()} buffers.
+     */
+    abstract OutputStream openOutputStream() throws IOException;
+
+    /**
+     * AF_UNIX channels came with Java 16, while the agents are built for Java 8.
+     */
+    private static SocketChannel openUnixChannel(String path) throws IOException {
+        SocketAddress address;
+        SocketChannel channel;
+        try {
+            address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", String.class).invoke(null, path);
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            channel = (SocketChannel) SocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, unix);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | IllegalArgumentException e) {
+            throw new UnsupportedOperationException("Unix domain sockets need Java 16 or later", e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new UnsupportedOperationException(cause);
+        }
+        try {
+            configure(channel);
+            channel.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    static final class TcpConnection extends AgentConnection {
+        private final Socket socket;
+
+        TcpConnection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        InputStream openInputStream() throws IOException {
+            // do partial close, since socket.getInputStream and
+            // getOutputStream doesn't do it by
+            return new BufferedInputStream(new FilterInputStream(socket.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    socket.shutdownInput();
+                }
+            }, BUFFERS.getBufferSize());
+        }
+
+        @Override
+        OutputStream openOutputStream() throws IOException {
+            // unbuffered, the CoalescingOutputStream on top is the only buffer
+            return new FilterOutputStream(socket.getOutputStream()) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    socket.shutdownOutput();
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * Runs over a {@link SocketChannel}, buffering in pooled direct buffers so that the
+     * channel reads and writes go straight to native memory.
+     *
+     * <p>
+     * {@code Channels.newInputStream} would serialize reads and writes on the channel's
+     * blocking lock, which stalls a full duplex protocol like remoting, so we go to the
+     * channel directly.
+     * </p>
+     */
+    static final class ChannelConnection extends AgentConnection {
+        private final SocketChannel channel;
+
+        ChannelConnection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        InputStream openInputStream() {
+            return new ChannelInputStream(channel);
+        }
+
+        @Override
+        OutputStream openOutputStream() {
+            return new ChannelOutputStream(channel);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    static final class ChannelInputStream extends InputStream {
+        private final SocketChannel channel;
+
+        private ByteBuffer buffer;
+
+        ChannelInputStream(SocketChannel channel) {
+            this.channel = channel;
+            this.buffer = BUFFERS.acquire();
+            buffer.limit(0);
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public synchronized int available() {
+            return buffer != null ? buffer.remaining() : 0;
+        }
+
+        /**
+         * Makes sure there's something to read in the buffer, unless the stream has ended.
+         */
+        private boolean fill() throws IOException {
+            if (buffer == null) {
+                return false;
+            }
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+            buffer.clear();
+            int n;
+            try {
+                n = channel.read(buffer);
+            } finally {
+                buffer.flip();
+            }
+            return n > 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                // unblocks a pending read first, which then gives up the lock
+                channel.shutdownInput();
+            } catch (ClosedChannelException e) {
+                // already gone with the whole channel
+            } finally {
+                synchronized (this) {
+                    if (buffer != null) {
+                        BUFFERS.release(buffer);
+                        buffer = null;
+                    }
+                }
+            }
+        }
+    }
+
+    static final class ChannelOutputStream extends OutputStream {
+        private final SocketChannel channel;
+
+        private ByteBuffer buffer;
+
+        ChannelOutputStream(SocketChannel channel) {
+            this.channel = channel;
+            this.buffer = BUFFERS.acquire();
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            ensureOpen();
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int n = Math.min(len, buffer.remaining());
+                buffer.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            ensureOpen();
+            drain();
+        }
+
+        private void ensureOpen() throws IOException {
+            if (buffer == null) {
+                throw new IOException("Stream closed");
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } finally {
+                buffer.compact();
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (buffer == null) {
+                return;
+            }
+            try {
+                drain();
+                channel.shutdownOutput();
+            } finally {
+                BUFFERS.release(buffer);
+                buffer = null;
+            }
+        }
+    }
+}
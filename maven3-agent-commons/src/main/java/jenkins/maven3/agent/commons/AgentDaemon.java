@@ -0,0 +1,569 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Hands the agent launches of a node over to one long lived agent JVM.
+ *
+ * <p>
+ * The master launches the agent as before and the agent connects to the master as before,
+ * so nothing changes on the master side. The first agent takes the lock in the daemon
+ * directory and becomes the daemon. A later agent finds the lock taken, leaves a description
+ * of its {@link Launch launch} in the directory and waits while the daemon connects to the
+ * master in its place, relaying what the daemon prints for the launch to its own stdout and
+ * stderr.
+ * </p>
+ *
+ * <p>
+ * Nothing listens on a socket: launches are only accepted through the directory, which
+ * has to be owned by the user running the agent and, where the file system has POSIX
+ * permissions, be accessible to that user only.
+ * </p>
+ *
+ * @since 1.15
+ */
+public final class AgentDaemon implements Closeable {
+
+    /**
+     * Directory the daemon and the agents meet in, {@code ~/.jenkins-maven-agent} by default.
+     */
+    public static final String DIR_PROPERTY = "jenkins.maven3.agent.daemon.dir";
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private static final long POLL_INTERVAL = 100;
+
+    private static final String LOCK = "daemon.lock";
+
+    private static final String REQUEST = ".request";
+
+    private static final String ACTIVE = ".active";
+
+    private static final String DONE = ".done";
+
+    private static final String STDOUT = ".out";
+
+    private static final String STDERR = ".err";
+
+    private static final String SERVED = "served";
+
+    private static final String REJECTED = "rejected";
+
+    private static final String FAILED = "failed";
+
+    private final Path dir;
+
+    private final FileChannel lockChannel;
+
+    private FileLock lock;
+
+    private AgentDaemon(Path dir, FileChannel lockChannel) {
+        this.dir = dir;
+        this.lockChannel = lockChannel;
+    }
+
+    /**
+     * Opens the directory given by {@link #DIR_PROPERTY}, creating it if needed.
+     *
+     * @throws IOException
+     *            if the directory can't be created, or other users could access it.
+     */
+    public static AgentDaemon open() throws IOException {
+        String path = System.getProperty(DIR_PROPERTY);
+        return open(path != null ? new File(path) : new File(System.getProperty("user.home"), ".jenkins-maven-agent"));
+    }
+
+    static AgentDaemon open(File directory) throws IOException {
+        Path dir = directory.toPath();
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            if (posix) {
+                Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            } else {
+                Files.createDirectories(dir);
+            }
+        }
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException(dir + " is not a directory");
+        }
+        if (posix) {
+            UserPrincipal user = dir.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS).equals(user)) {
+                throw new IOException(dir + " is not owned by " + user);
+            }
+            if (!Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS).equals(OWNER_ONLY)) {
+                throw new IOException(dir + " can be accessed by other users than its owner");
+            }
+        }
+        return new AgentDaemon(dir, FileChannel.open(dir.resolve(LOCK),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE));
+    }
+
+    public File getDirectory() {
+        return dir.toFile();
+    }
+
+    /**
+     * Takes the daemon lock if no other agent holds it.
+     *
+     * @return true if this JVM is the daemon now.
+     */
+    public boolean tryBecomeDaemon() throws IOException {
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held through another instance in this JVM
+            return false;
+        }
+        if (lock == null) {
+            return false;
+        }
+        // launches a daemon took and never finished, let their agents exit
+        for (Path active : list(ACTIVE)) {
+            new Session(idOf(active, ACTIVE), null).finish(FAILED);
+        }
+        return true;
+    }
+
+    public boolean isDaemon() {
+        return lock != null;
+    }
+
+    /**
+     * Leaves the given launch to the daemon and waits until the daemon has run it. What the
+     * daemon prints for the launch meanwhile goes to {@link System#out} and {@link System#err}.
+     *
+     * @return true if the daemon ran the launch, false if this JVM has to run it itself
+     *         because the daemon didn't take it or went away before it did.
+     * @throws IOException
+     *            if the daemon went away in the middle of the launch.
+     */
+    public boolean handOver(Launch launch) throws IOException, InterruptedException {
+        if (isDaemon()) {
+            throw new IllegalStateException("The daemon can't hand a launch over to itself");
+        }
+        String id = UUID.randomUUID().toString();
+        Path tmp = dir.resolve(id + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            launch.write(out);
+        }
+        Files.move(tmp, dir.resolve(id + REQUEST), StandardCopyOption.ATOMIC_MOVE);
+
+        Relay stdout = new Relay(dir.resolve(id + STDOUT), System.out);
+        Relay stderr = new Relay(dir.resolve(id + STDERR), System.err);
+        Path done = dir.resolve(id + DONE);
+        try {
+            while (true) {
+                stdout.pump();
+                stderr.pump();
+                if (Files.exists(done)) {
+                    String status = new String(Files.readAllBytes(done), StandardCharsets.UTF_8);
+                    Files.delete(done);
+                    // the daemon closed the output before it wrote the status
+                    stdout.pump();
+                    stderr.pump();
+                    if (status.equals(FAILED)) {
+                        throw new IOException("The agent daemon went away in the middle of the launch");
+                    }
+                    return status.equals(SERVED);
+                }
+                if (!isDaemon() && tryBecomeDaemon() && Files.deleteIfExists(dir.resolve(id + REQUEST))) {
+                    // the daemon exited before it took the launch
+                    return false;
+                }
+                Thread.sleep(POLL_INTERVAL);
+            }
+        } finally {
+            stdout.delete();
+            stderr.delete();
+        }
+    }
+
+    /**
+     * Waits for the next launch handed over by another agent.
+     *
+     * @return null if none came within the timeout, in which case this JVM stops being the daemon.
+     */
+    public Session nextSession(long timeout) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            for (Path request : list(REQUEST)) {
+                String id = idOf(request, REQUEST);
+                Path active = dir.resolve(id + ACTIVE);
+                try {
+                    Files.move(request, active, StandardCopyOption.ATOMIC_MOVE);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(active))) {
+                    return new Session(id, Launch.read(in));
+                } catch (IOException e) {
+                    // written by another version of the agent, which runs it itself
+                    new Session(id, null).finish(REJECTED);
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                // agents still waiting notice the lock is free and run their launch themselves
+                close();
+                return null;
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * Stops being the daemon, if this JVM was.
+     */
+    @Override
+    public void close() throws IOException {
+        if (lock != null) {
+            lock.release();
+            lock = null;
+        }
+    }
+
+    private List<Path> list(String suffix) throws IOException {
+        List<Path> r = new ArrayList<>();
+        try (DirectoryStream<Path> s = Files.newDirectoryStream(dir, "*" + suffix)) {
+            for (Path p : s) {
+                r.add(p);
+            }
+        }
+        return r;
+    }
+
+    private static String idOf(Path p, String suffix) {
+        String name = p.getFileName().toString();
+        return name.substring(0, name.length() - suffix.length());
+    }
+
+    /**
+     * Everything about an agent launch that the daemon can't take over from its own: the
+     * arguments, the JVM options, the system properties and the environment the agent JVM
+     * was started with.
+     */
+    public static final class Launch {
+
+        private final String[] args;
+
+        private final List<String> jvmOptions;
+
+        private final Map<String, String> systemProperties;
+
+        private final Map<String, String> environment;
+
+        Launch(String[] args, List<String> jvmOptions, Map<String, String> systemProperties,
+               Map<String, String> environment) {
+            this.args = args.clone();
+            this.jvmOptions = Collections.unmodifiableList(new ArrayList<>(jvmOptions));
+            this.systemProperties = Collections.unmodifiableMap(new TreeMap<>(systemProperties));
+            this.environment = Collections.unmodifiableMap(new TreeMap<>(environment));
+        }
+
+        /**
+         * Describes the launch of this JVM.
+         *
+         * @param systemProperties
+         *            System properties as they were when the agent main was entered, before
+         *            the agent set any of its own.
+         */
+        public static Launch current(String[] args, Properties systemProperties) {
+            List<String> jvmOptions = new ArrayList<>();
+            for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+                // the system properties are compared on their own
+                if (!option.startsWith("-D")) {
+                    jvmOptions.add(option);
+                }
+            }
+            Map<String, String> properties = new TreeMap<>();
+            for (String name : systemProperties.stringPropertyNames()) {
+                properties.put(name, systemProperties.getProperty(name));
+            }
+            return new Launch(args, jvmOptions, properties, System.getenv());
+        }
+
+        /**
+         * Command line arguments the agent was started with.
+         */
+        public String[] getArgs() {
+            return args.clone();
+        }
+
+        public Map<String, String> getSystemProperties() {
+            return systemProperties;
+        }
+
+        public Map<String, String> getEnvironment() {
+            return environment;
+        }
+
+        /**
+         * Tells whether a daemon started as this launch can run the given one. Only the last
+         * argument, the address of the master, and the system properties that aren't settings
+         * of the agent or the launcher may differ: the daemon sets those for each session. The
+         * environment can't be changed for a session, and neither can the JVM options nor the
+         * settings read once when the daemon started.
+         *
+         * @return why the daemon can't run the launch, null if it can.
+         */
+        public String mismatch(Launch other) {
+            if (args.length != other.args.length
+                    || !Arrays.asList(args).subList(0, args.length - 1)
+                        .equals(Arrays.asList(other.args).subList(0, other.args.length - 1))) {
+                return "another Maven installation or other interceptors";
+            }
+            if (!jvmOptions.equals(other.jvmOptions)) {
+                return "other JVM options";
+            }
+            if (!environment.equals(other.environment)) {
+                return "another environment";
+            }
+            if (!equal(systemProperties.get("java.home"), other.systemProperties.get("java.home"))
+                    || !settings(systemProperties).equals(settings(other.systemProperties))) {
+                return "another JVM or other agent settings";
+            }
+            return null;
+        }
+
+        private static Map<String, String> settings(Map<String, String> properties) {
+            Map<String, String> r = new TreeMap<>();
+            for (Map.Entry<String, String> e : properties.entrySet()) {
+                if (e.getKey().startsWith("jenkins.maven3.") && !e.getKey().equals(BulkTransport.ADDRESS_PROPERTY)) {
+                    r.put(e.getKey(), e.getValue());
+                }
+            }
+            return r;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(args.length);
+            for (String arg : args) {
+                writeString(out, arg);
+            }
+            out.writeInt(jvmOptions.size());
+            for (String option : jvmOptions) {
+                writeString(out, option);
+            }
+            writeMap(out, systemProperties);
+            writeMap(out, environment);
+        }
+
+        static Launch read(DataInputStream in) throws IOException {
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = readString(in);
+            }
+            List<String> jvmOptions = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                jvmOptions.add(readString(in));
+            }
+            Map<String, String> systemProperties = readMap(in);
+            Map<String, String> environment = readMap(in);
+            return new Launch(args, jvmOptions, systemProperties, environment);
+        }
+
+        private static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+            out.writeInt(map.size());
+            for (Map.Entry<String, String> e : map.entrySet()) {
+                writeString(out, e.getKey());
+                writeString(out, e.getValue());
+            }
+        }
+
+        private static Map<String, String> readMap(DataInputStream in) throws IOException {
+            Map<String, String> map = new TreeMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                map.put(readString(in), readString(in));
+            }
+            return map;
+        }
+
+        /**
+         * Unlike {@link DataOutputStream#writeUTF(String)}, not limited to 64 KiB, which
+         * a {@code PATH} or a class path may exceed.
+         */
+        private static void writeString(DataOutputStream out, String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * A launch another agent handed over to the daemon.
+     */
+    public final class Session {
+
+        private final String id;
+
+        private final Launch launch;
+
+        private PrintStream stdout;
+
+        private PrintStream stderr;
+
+        private Session(String id, Launch launch) {
+            this.id = id;
+            this.launch = launch;
+        }
+
+        public Launch getLaunch() {
+            return launch;
+        }
+
+        /**
+         * Stream the waiting agent copies to its stdout.
+         */
+        public synchronized PrintStream getStdout() throws IOException {
+            if (stdout == null) {
+                stdout = open(STDOUT);
+            }
+            return stdout;
+        }
+
+        /**
+         * Stream the waiting agent copies to its stderr.
+         */
+        public synchronized PrintStream getStderr() throws IOException {
+            if (stderr == null) {
+                stderr = open(STDERR);
+            }
+            return stderr;
+        }
+
+        private PrintStream open(String suffix) throws IOException {
+            return new PrintStream(new FileOutputStream(dir.resolve(id + suffix).toFile()), true);
+        }
+
+        /**
+         * Lets the waiting agent exit.
+         *
+         * @param served
+         *            false if the daemon couldn't run the launch, so that the agent runs it itself.
+         */
+        public void finish(boolean served) throws IOException {
+            finish(served ? SERVED : REJECTED);
+        }
+
+        private synchronized void finish(String status) throws IOException {
+            if (stdout != null) {
+                stdout.close();
+            }
+            if (stderr != null) {
+                stderr.close();
+            }
+            Path tmp = dir.resolve(id + ".tmp");
+            Files.write(tmp, status.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, dir.resolve(id + DONE), StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(dir.resolve(id + ACTIVE));
+        }
+    }
+
+    /**
+     * Copies what the daemon appends to an output file of a session to a stream of this JVM.
+     */
+    private static final class Relay {
+
+        private final Path file;
+
+        private final OutputStream target;
+
+        private long position;
+
+        Relay(Path file, OutputStream target) {
+            this.file = file;
+            this.target = target;
+        }
+
+        void pump() throws IOException {
+            if (!Files.exists(file)) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                InputStream in = Channels.newInputStream(channel.position(position));
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    target.write(buf, 0, n);
+                    position += n;
+                }
+            } catch (NoSuchFileException e) {
+                return;
+            }
+            target.flush();
+        }
+
+        void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+}
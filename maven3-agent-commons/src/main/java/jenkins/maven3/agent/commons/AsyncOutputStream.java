@@ -0,0 +1,358 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Output stream that hands the bytes to a dedicated writer thread through a bounded ring
+ * buffer, so that threads writing to the master don't block on the socket while the master
+ * is slow to read.
+ *
+ * <p>
+ * Writes and flushes return as soon as the bytes are in the buffer. The ring buffer takes
+ * no locks: writes to this stream are serialized, and the writer thread is the only one
+ * taking bytes out. What happens when the buffer is full depends on the {@link OverflowPolicy}.
+ * {@link #close()} waits until everything is written, then closes the underlying stream.
+ * </p>
+ *
+ * @since 1.15
+ */
+public class AsyncOutputStream extends OutputStream {
+
+    /**
+     * There is no policy that drops progress output: every byte at this level belongs to a
+     * framed remoting command, and dropping any of them would break the channel.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Writers wait until the writer thread has made room.
+         */
+        BLOCK,
+        /**
+         * What doesn't fit goes to a temporary file, which the writer thread sends once the
+         * buffer is drained. Writers never wait, at the expense of disk space.
+         */
+        SPILL;
+
+        public static OverflowPolicy parse(String name) {
+            return valueOf(name.toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    private final OutputStream out;
+
+    private final byte[] ring;
+
+    private final OverflowPolicy policy;
+
+    private final TransportMetrics metrics;
+
+    private final Thread writer;
+
+    /**
+     * Bytes ever put into the ring by writers, and taken out by the writer thread.
+     */
+    private volatile long head, tail;
+
+    /**
+     * Bytes ever accepted by this stream, and sent to the underlying one.
+     * Both count in stream order, across the ring buffer and the spill file.
+     */
+    private volatile long accepted, sent;
+
+    /**
+     * {@link #accepted} at the last {@link #flush()}.
+     */
+    private volatile long flushTarget;
+
+    private volatile boolean closed;
+
+    private volatile IOException failure;
+
+    private volatile Thread blockedWriter;
+
+    private final Object spillLock = new Object();
+
+    /**
+     * While set, writers append to the spill file instead of the ring buffer. Only cleared by
+     * the writer thread once it has sent the whole file, at which point the ring is empty.
+     */
+    private volatile boolean spilling;
+
+    private File spillFile;
+
+    private RandomAccessFile spill;
+
+    private long spillWritten, spillRead;
+
+    /**
+     * @param metrics
+     *            Where to report queue depth, stalls and spills, or null.
+     */
+    public AsyncOutputStream(OutputStream out, int capacity, OverflowPolicy policy, TransportMetrics metrics) {
+        this.out = out;
+        this.ring = new byte[capacity];
+        this.policy = policy;
+        this.metrics = metrics;
+        this.writer = new Thread("remoting async writer") {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        };
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        ensureOpen();
+        long h = head;
+        if (spilling || h - tail == ring.length) {
+            // full, or the spill file has to come first
+            write(new byte[] {(byte) b}, 0, 1);
+            return;
+        }
+        ring[(int) (h % ring.length)] = (byte) b;
+        head = h + 1;
+        accepted++;
+        if (metrics != null) {
+            metrics.recordQueueDepth(accepted - sent);
+        }
+        LockSupport.unpark(writer);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            if (spilling) {
+                if (appendToSpill(b, off, len, false)) {
+                    accepted += len;
+                    break;
+                }
+                // the writer thread caught up in the meantime
+                continue;
+            }
+            int n = putInRing(b, off, len);
+            off += n;
+            len -= n;
+            accepted += n;
+            if (len == 0) {
+                break;
+            }
+            if (policy == OverflowPolicy.SPILL) {
+                appendToSpill(b, off, len, true);
+                accepted += len;
+                break;
+            }
+            awaitSpace();
+        }
+        if (metrics != null) {
+            metrics.recordQueueDepth(accepted - sent);
+        }
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Returns right away, the writer thread flushes the underlying stream once it has
+     * written everything up to here.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        flushTarget = accepted;
+        LockSupport.unpark(writer);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing out the remaining output", e);
+        } finally {
+            synchronized (spillLock) {
+                if (spill != null) {
+                    spill.close();
+                    spillFile.delete();
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IOException("Writing to the master failed", failure);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (failure != null) {
+            throw new IOException("Writing to the master failed", failure);
+        }
+    }
+
+    /**
+     * Copies as much as fits into the ring buffer.
+     */
+    private int putInRing(byte[] b, int off, int len) {
+        long h = head;
+        int n = (int) Math.min(ring.length - (h - tail), len);
+        if (n <= 0) {
+            return 0;
+        }
+        int pos = (int) (h % ring.length);
+        int first = Math.min(n, ring.length - pos);
+        System.arraycopy(b, off, ring, pos, first);
+        System.arraycopy(b, off + first, ring, 0, n - first);
+        head = h + n;
+        return n;
+    }
+
+    private void awaitSpace() throws IOException {
+        long start = System.nanoTime();
+        blockedWriter = Thread.currentThread();
+        LockSupport.unpark(writer);
+        try {
+            while (head - tail == ring.length && failure == null && writer.isAlive()) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        } finally {
+            blockedWriter = null;
+            if (metrics != null) {
+                metrics.recordAsyncStall(System.nanoTime() - start);
+            }
+        }
+        ensureOpen();
+    }
+
+    /**
+     * @param start
+     *            true to start spilling, false to only append while the spill is still in use.
+     * @return false if the spill file is no longer in use.
+     */
+    private boolean appendToSpill(byte[] b, int off, int len, boolean start) throws IOException {
+        synchronized (spillLock) {
+            if (!start && !spilling) {
+                return false;
+            }
+            if (spill == null) {
+                spillFile = File.createTempFile("remoting-spill", ".bin");
+                spillFile.deleteOnExit();
+                spill = new RandomAccessFile(spillFile, "rw");
+            }
+            spill.seek(spillWritten);
+            spill.write(b, off, len);
+            spillWritten += len;
+            spilling = true;
+        }
+        if (metrics != null) {
+            metrics.recordSpill(len);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next part of the spill file, or stops spilling once all of it is read.
+     */
+    private int readSpill(byte[] chunk) throws IOException {
+        synchronized (spillLock) {
+            if (spillRead == spillWritten) {
+                spill.setLength(0);
+                spillRead = spillWritten = 0;
+                spilling = false;
+                return 0;
+            }
+            spill.seek(spillRead);
+            int n = spill.read(chunk, 0, (int) Math.min(chunk.length, spillWritten - spillRead));
+            spillRead += n;
+            return n;
+        }
+    }
+
+    private void drainLoop() {
+        byte[] chunk = new byte[8192];
+        long flushed = 0;
+        try {
+            while (true) {
+                long h = head, t = tail;
+                if (h > t) {
+                    int pos = (int) (t % ring.length);
+                    int n = (int) Math.min(h - t, ring.length - pos);
+                    out.write(ring, pos, n);
+                    tail = t + n;
+                    sent += n;
+                    Thread blocked = blockedWriter;
+                    if (blocked != null) {
+                        LockSupport.unpark(blocked);
+                    }
+                } else if (spilling) {
+                    int n = readSpill(chunk);
+                    out.write(chunk, 0, n);
+                    sent += n;
+                } else if (closed && head == tail && !spilling) {
+                    out.close();
+                    return;
+                }
+                long target = flushTarget;
+                if (target > flushed && sent >= target) {
+                    out.flush();
+                    flushed = sent;
+                }
+                if (metrics != null) {
+                    metrics.recordQueueDepth(accepted - sent);
+                }
+                if (head == tail && !spilling && !closed) {
+                    LockSupport.park(this);
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            try {
+                out.close();
+            } catch (IOException x) {
+                e.addSuppressed(x);
+            }
+        } finally {
+            Thread blocked = blockedWriter;
+            if (blocked != null) {
+                LockSupport.unpark(blocked);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Where the startup time of an agent JVM goes.
+ *
+ * <p>
+ * Each phase is recorded with {@link System#nanoTime()} relative to the moment the agent
+ * main class was initialized. Phases are recorded once: a daemon agent that serves several
+ * sessions only reports its first startup.
+ * </p>
+ *
+ * @since 1.15
+ */
+public final class BootstrapTimings {
+
+    /**
+     * If set, the timings are written to this file as JSON when the JVM exits.
+     */
+    public static final String DUMP_PROPERTY = "jenkins.maven3.agent.timings.file";
+
+    public static final String M2HOME_CANONICALIZATION = "m2Home.canonicalization";
+    public static final String VERSION_CHECK = "versionCheck";
+    public static final String CLASSWORLDS_CONFIGURE = "classworlds.configure";
+    public static final String REMOTING_REALM = "remoting.realm";
+    public static final String SOCKET_CONNECT = "socket.connect";
+    /**
+     * Time the agent main spent waiting for the background connect after its own setup.
+     */
+    public static final String SOCKET_CONNECT_WAIT = "socket.connect.wait";
+    public static final String REMOTING_HANDSHAKE = "remoting.handshake";
+    /**
+     * Spans from the start of the agent to the first {@code launch} call.
+     */
+    public static final String FIRST_LAUNCH = "launch.first";
+
+    private final long origin = System.nanoTime();
+
+    /**
+     * Phase name to {start, end}, both relative to {@link #origin}. end is -1 while running.
+     */
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+
+    public synchronized void start(String phase) {
+        if (!phases.containsKey(phase)) {
+            phases.put(phase, new long[] {System.nanoTime() - origin, -1});
+        }
+    }
+
+    public synchronized void end(String phase) {
+        long[] p = phases.get(phase);
+        if (p != null && p[1] < 0) {
+            p[1] = System.nanoTime() - origin;
+        }
+    }
+
+    /**
+     * Records a phase that spans from the start of the agent until now.
+     */
+    public synchronized void mark(String phase) {
+        if (!phases.containsKey(phase)) {
+            phases.put(phase, new long[] {0, System.nanoTime() - origin});
+        }
+    }
+
+    /**
+     * Durations in nanoseconds of the phases completed so far, in the order they started.
+     */
+    public synchronized Map<String, Long> getDurations() {
+        Map<String, Long> r = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> e : phases.entrySet()) {
+            if (e.getValue()[1] >= 0) {
+                r.put(e.getKey(), e.getValue()[1] - e.getValue()[0]);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Writes the timings on exit if {@link #DUMP_PROPERTY} is set.
+     */
+    public void dumpOnExit() {
+        final String file = System.getProperty(DUMP_PROPERTY);
+        if (file == null) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread("bootstrap timings dump") {
+            @Override
+            public void run() {
+                try {
+                    dump(file);
+                } catch (IOException e) {
+                    System.err.println("Failed to write the bootstrap timings to " + file + ": " + e);
+                }
+            }
+        });
+    }
+
+    @SuppressFBWarnings("PATH_TRAVERSAL_OUT")
+    private synchronized void dump(String file) throws IOException {
+        StringBuilder json = new StringBuilder("{\"unit\":\"ns\",\"phases\":[");
+        boolean first = true;
+        for (Map.Entry<String, long[]> e : phases.entrySet()) {
+            long[] p = e.getValue();
+            if (p[1] < 0) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"name\":\"").append(e.getKey())
+                    .append("\",\"start\":").append(p[0])
+                    .append(",\"duration\":").append(p[1] - p[0]).append('}');
+        }
+        json.append("]}\n");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            w.write(json.toString());
+        }
+    }
+}
@@ -1,18 +1,18 @@
 /*
  * The MIT License
- * 
- * Copyright (c) 2004-2009, Sun Microsystems, Inc., Kohsuke Kawaguchi
- * 
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
  * Permission is hereby granted, free of charge, to any person obtaining a copy
  * of this software and associated documentation files (the "Software"), to deal
  * in the Software without restriction, including without limitation the rights
  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
  * copies of the Software, and to permit persons to whom the Software is
  * furnished to do so, subject to the following conditions:
- * 
+ *
  * The above copyright notice and this permission notice shall be included in
  * all copies or substantial portions of the Software.
- * 
+ *
  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
@@ -21,32 +21,46 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-package org.jvnet.hudson.maven3.agent;
+package jenkins.maven3.agent.commons;
 
-import java.io.FilterOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
- * JDK's {@link java.io.FilterOutputStream} has some real issues.
- *
- * @author Kohsuke Kawaguchi
+ * Keeps a few direct buffers around, so that a daemon agent doesn't allocate native
+ * memory for every session it serves.
  */
-class RealFilterOutputStream
-    extends FilterOutputStream {
-    public RealFilterOutputStream( OutputStream core ) {
-        super(core);
+final class BufferPool {
+
+    private final int bufferSize;
+
+    private final int maxPooled;
+
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
     }
 
-    public void write(byte[] b) throws IOException {
-        out.write(b);
+    int getBufferSize() {
+        return bufferSize;
     }
 
-    public void write(byte[] b, int off, int len) throws IOException {
-        out.write(b, off, len);
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
     }
 
-    public void close() throws IOException {
-        out.close();
+    void release(ByteBuffer buffer) {
+        // size() is only a hint here, the pool may go slightly over maxPooled
+        if (free.size() < maxPooled) {
+            free.offer(buffer);
+        }
     }
 }
@@ -0,0 +1,265 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Side connections to the master for large payloads, such as test reports or artifacts,
+ * so that they don't hold up the small commands on the remoting channel behind them.
+ *
+ * <p>
+ * The master enables it by passing the address it listens on for these connections as
+ * {@value #ADDRESS_PROPERTY}, in any form {@link AgentAddress} understands, which the agent
+ * main hands to {@link #startSession(String)} for the session with that master. A shared secret
+ * to prove the connection comes from this agent is handed over through the remoting channel
+ * with {@link #setToken(String)}, rather than on the command line where other users of the
+ * node could read it. Every payload gets a connection of its own, bare of the compression,
+ * coalescing and metering of the remoting connection, which starts with a header:
+ * </p>
+ * <ul>
+ *   <li>the four bytes {@code JMB1},</li>
+ *   <li>the token and the payload name, each as {@link DataOutputStream#writeUTF(String)},</li>
+ * </ul>
+ * <p>
+ * followed by the payload up to the end of the stream. The master acknowledges with a single
+ * zero byte once it has read the whole payload.
+ * </p>
+ *
+ * <p>
+ * A batch of files sent with {@link #sendFiles(String, Map)} starts with {@code JMF1} instead,
+ * followed by the token, the batch name and the number of files. Each file then comes as its
+ * name, its length as a long, its bytes, and the CRC-32 of its bytes as a long.
+ * </p>
+ *
+ * @since 1.15
+ */
+public final class BulkTransport {
+
+    public static final String ADDRESS_PROPERTY = "jenkins.maven3.agent.bulk";
+
+    static final int MAGIC = 0x4A4D4231;
+
+    static final int FILES_MAGIC = 0x4A4D4631;
+
+    private static volatile AgentAddress address;
+
+    private static volatile String token;
+
+    private BulkTransport() {
+    }
+
+    /**
+     * Points the bulk connections at the master of the remoting session that starts. A daemon
+     * agent serves sessions for several masters, so it calls this for each of them with the
+     * address the agent that handed the session over was given.
+     *
+     * @param address
+     *            Value of {@value #ADDRESS_PROPERTY} for the session, null if the master didn't
+     *            set up bulk connections.
+     */
+    public static void startSession(String address) {
+        BulkTransport.address = address != null ? AgentAddress.parse(address) : null;
+        token = null;
+    }
+
+    /**
+     * Forgets the master and the token of the session that ended.
+     */
+    public static void endSession() {
+        address = null;
+        token = null;
+        RttProbe.stop();
+        RttEstimator.get().reset();
+    }
+
+    /**
+     * @param token
+     *            Secret the master expects in the header of the bulk connections, null for none.
+     */
+    public static void setToken(String token) {
+        BulkTransport.token = token;
+        // the probe connections carry the token too
+        RttProbe.start(token != null ? address : null);
+    }
+
+    public static boolean isEnabled() {
+        return address != null;
+    }
+
+    /**
+     * Opens a connection for one payload.
+     *
+     * @return stream to write the payload to. Closing it waits for the master to acknowledge
+     *         the payload.
+     */
+    public static OutputStream open(String name) throws IOException {
+        AgentAddress address = address();
+        final SocketChannel channel = AgentConnection.openChannel(address);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 8192));
+            writeHeader(out, MAGIC, name);
+            return new FilterOutputStream(out) {
+                private boolean closed;
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    try {
+                        out.flush();
+                        channel.shutdownOutput();
+                        awaitAck(Channels.newInputStream(channel));
+                    } finally {
+                        channel.close();
+                    }
+                }
+            };
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the given files to the master over a connection of their own, straight from the
+     * file system cache to the socket with {@link FileChannel#transferTo}, without copying
+     * them through the Java heap. Returns once the master has acknowledged the batch.
+     *
+     * @param files
+     *            Name to tell the master for each file, to the file.
+     * @return the number of file bytes sent.
+     */
+    public static long sendFiles(String name, Map<String, File> files) throws IOException {
+        AgentAddress address = address();
+        long total = 0;
+        try (SocketChannel channel = AgentConnection.openChannel(address)) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(header);
+            writeHeader(out, FILES_MAGIC, name);
+            out.writeInt(files.size());
+            for (Map.Entry<String, File> e : files.entrySet()) {
+                try (FileChannel file = new FileInputStream(e.getValue()).getChannel()) {
+                    long length = file.size();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(length);
+                    writeFully(channel, header);
+                    for (long position = 0; position < length; ) {
+                        long sent = file.transferTo(position, length - position, channel);
+                        if (sent == 0) {
+                            throw changed(e.getValue());
+                        }
+                        position += sent;
+                    }
+                    out.writeLong(checksum(file, length, e.getValue()));
+                    total += length;
+                }
+            }
+            writeFully(channel, header);
+            channel.shutdownOutput();
+            awaitAck(Channels.newInputStream(channel));
+        }
+        return total;
+    }
+
+    private static void writeFully(SocketChannel channel, ByteArrayOutputStream bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        bytes.reset();
+    }
+
+    /**
+     * By the time this runs the file has just been sent, so its pages are in the cache. It reads
+     * rather than maps them: a mapping keeps the file locked on Windows until it is collected.
+     */
+    private static long checksum(FileChannel file, long length, File f) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        for (long position = 0; position < length; ) {
+            buf.clear().limit((int) Math.min(buf.capacity(), length - position));
+            int n = file.read(buf, position);
+            if (n <= 0) {
+                throw changed(f);
+            }
+            buf.flip();
+            crc.update(buf);
+            position += n;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * {@link FileChannel#transferTo} sends nothing rather than failing once the file has been
+     * truncated under it.
+     */
+    private static IOException changed(File file) {
+        return new IOException(file + " changed while it was being sent");
+    }
+
+    static AgentAddress address() throws IOException {
+        AgentAddress address = BulkTransport.address;
+        if (address == null) {
+            throw new IOException("No bulk connection to the master, " + ADDRESS_PROPERTY + " isn't set");
+        }
+        return address;
+    }
+
+    static void writeHeader(DataOutputStream out, int magic, String name) throws IOException {
+        out.writeInt(magic);
+        String token = BulkTransport.token;
+        out.writeUTF(token != null ? token : "");
+        out.writeUTF(name);
+    }
+
+    static void awaitAck(InputStream in) throws IOException {
+        int ack = in.read();
+        if (ack != 0) {
+            throw new IOException(ack < 0 ? "The master closed the bulk connection without acknowledging the payload"
+                    : "The master rejected the bulk payload: " + ack);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * AppCDS archive for the classes an agent JVM loads while it boots Maven.
+ *
+ * <p>
+ * A JVM can only map a class data sharing archive at startup, so with
+ * {@code -Djenkins.maven3.agent.cds=true} the agent main runs the agent in a child JVM
+ * started with the options of the archive, see {@link #relaunchIfEnabled(Class, String...)}.
+ * The first run records the loaded classes with {@code -XX:ArchiveClassesAtExit} (JDK 13+),
+ * later runs map the archive with {@code -XX:SharedArchiveFile}. {@code -Xshare:auto} makes
+ * the JVM fall back to regular class loading if the archive turns out to be unusable.
+ * </p>
+ *
+ * <p>
+ * The archive is keyed by the Maven installation and the jars in its {@code boot} and {@code lib}
+ * directories, {@code lib/ext} included, the checksums of the interceptor and remoting jars,
+ * and the JDK, so that an upgrade of any of them records a fresh archive.
+ * </p>
+ *
+ * @since 1.15
+ */
+public final class CdsArchive {
+
+    /**
+     * Directory the archives are kept in, defaults to {@code ${java.io.tmpdir}/jenkins-maven-cds}.
+     */
+    public static final String DIR_PROPERTY = "jenkins.maven3.agent.cds.dir";
+
+    /**
+     * Set to run the agents with the archive.
+     */
+    public static final String ENABLED_PROPERTY = "jenkins.maven3.agent.cds";
+
+    /**
+     * Set on the child JVM, which runs the agent itself.
+     */
+    private static final String CHILD_PROPERTY = "jenkins.maven3.agent.cds.child";
+
+    private final File file;
+
+    private final int javaFeatureVersion;
+
+    private CdsArchive(File file, int javaFeatureVersion) {
+        this.file = file;
+        this.javaFeatureVersion = javaFeatureVersion;
+    }
+
+    /**
+     * @param javaHome
+     *            JDK the agent JVM will run on.
+     * @param m2Home
+     *            Maven installation.
+     * @param jars
+     *            Remoting and interceptor jars that end up in the agent's realms.
+     */
+    @SuppressFBWarnings("PATH_TRAVERSAL_IN")
+    public static CdsArchive of(File javaHome, File m2Home, File... jars) throws IOException {
+        Properties release = readRelease(javaHome);
+        String javaVersion = unquote(release.getProperty("JAVA_VERSION", ""));
+
+        MessageDigest digest = sha1();
+        update(digest, javaHome.getCanonicalPath());
+        update(digest, javaVersion);
+        update(digest, unquote(release.getProperty("IMPLEMENTOR", "")));
+        update(digest, m2Home.getCanonicalPath());
+        for (String dir : new String[] {"boot", "lib"}) {
+            for (File jar : listJars(new File(m2Home, dir))) {
+                update(digest, jar.getPath() + ':' + jar.length() + ':' + jar.lastModified());
+            }
+        }
+        for (File jar : jars) {
+            if (jar != null && jar.isFile()) {
+                checksum(digest, jar);
+            }
+        }
+
+        String dir = System.getProperty(DIR_PROPERTY);
+        File archiveDir = dir != null ? new File(dir) : new File(System.getProperty("java.io.tmpdir"), "jenkins-maven-cds");
+        return new CdsArchive(new File(archiveDir, toHex(digest.digest()) + ".jsa"), featureVersion(javaVersion));
+    }
+
+    /**
+     * If {@link #ENABLED_PROPERTY} is set, runs the given agent main with the same arguments
+     * in a child JVM that maps the archive for the Maven installation and the jars in the
+     * arguments, or records it if there is none yet, and exits with the exit code of the child.
+     * Returns right away otherwise, on the child itself, and if the JDK can't use the archive.
+     * Nothing has connected to the master yet when this runs, the child does.
+     */
+    @SuppressFBWarnings({"COMMAND_INJECTION", "PATH_TRAVERSAL_IN"})
+    public static void relaunchIfEnabled(Class<?> main, String... args) throws IOException, InterruptedException {
+        if (!Boolean.getBoolean(ENABLED_PROPERTY) || Boolean.getBoolean(CHILD_PROPERTY) || args.length < 4) {
+            return;
+        }
+        File javaHome = new File(System.getProperty("java.home"));
+        List<File> jars = new ArrayList<>();
+        for (int i = 1; i < 4; i++) {
+            jars.add(new File(args[i]));
+        }
+        String classPath = System.getProperty("java.class.path");
+        for (String entry : classPath.split(File.pathSeparator)) {
+            jars.add(new File(entry));
+        }
+        List<String> options = of(javaHome, new File(args[0]), jars.toArray(new File[jars.size()])).getJvmOptions();
+        if (options.isEmpty()) {
+            return;
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(javaHome, "bin"), "java").getPath());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(options);
+        command.add("-D" + CHILD_PROPERTY + "=true");
+        command.add("-cp");
+        command.add(classPath);
+        command.add(main.getName());
+        command.addAll(Arrays.asList(args));
+        final Process child = new ProcessBuilder(command).inheritIO().start();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                // the node stops the agent by killing the JVM it started
+                child.destroy();
+            }
+        });
+        System.exit(child.waitFor());
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Dynamic archives need JDK 13 or later.
+     */
+    public boolean isSupported() {
+        return javaFeatureVersion >= 13;
+    }
+
+    /**
+     * JVM options that either map the archive or record it on this run.
+     * Empty if the JDK can't do dynamic archiving or the archive directory isn't writable.
+     */
+    public List<String> getJvmOptions() {
+        if (!isSupported()) {
+            return Collections.emptyList();
+        }
+        if (file.isFile()) {
+            return Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + file.getPath());
+        }
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList("-XX:ArchiveClassesAtExit=" + file.getPath());
+    }
+
+    private static Properties readRelease(File javaHome) throws IOException {
+        Properties release = new Properties();
+        File f = new File(javaHome, "release");
+        if (f.isFile()) {
+            try (InputStream in = new FileInputStream(f)) {
+                release.load(in);
+            }
+        }
+        return release;
+    }
+
+    private static String unquote(String s) {
+        s = s.trim();
+        if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) {
+            return s.substring(1, s.length() - 1);
+        }
+        return s;
+    }
+
+    /**
+     * "1.8.0_292" is 8, "17.0.9" is 17. 0 if we can't tell.
+     */
+    static int featureVersion(String javaVersion) {
+        String[] parts = javaVersion.split("[._\\-+]");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            return major == 1 && parts.length > 1 ? Integer.parseInt(parts[1]) : major;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Jars in the directory and below it, such as {@code lib/ext}, in a stable order.
+     */
+    private static List<File> listJars(File dir) {
+        List<File> jars = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File f : files) {
+                if (f.isDirectory()) {
+                    jars.addAll(listJars(f));
+                } else if (f.getName().endsWith(".jar")) {
+                    jars.add(f);
+                }
+            }
+        }
+        return jars;
+    }
+
+    private static void checksum(MessageDigest digest, File jar) throws IOException {
+        byte[] buf = new byte[8192];
+        try (InputStream in = new FileInputStream(jar)) {
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                digest.update(buf, 0, len);
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
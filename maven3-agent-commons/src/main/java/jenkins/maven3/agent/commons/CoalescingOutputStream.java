@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output stream to the master that coalesces small writes and flushes.
+ *
+ * <p>
+ * Writes are collected until {@code threshold} bytes are pending. A {@link #flush()} doesn't
+ * go to the socket right away but within a short window, so that the flushes of many builder
+ * threads in a {@code -T} build end up in one socket write. The window is a quarter of the
+ * smoothed round trip time to the master from {@link RttEstimator}, capped at {@code maxDelay}:
+ * on a slow link a few milliseconds more don't show, while on a LAN, below a millisecond of
+ * round trip, every flush goes out immediately. The window follows the estimate as it changes.
+ * With a {@code maxDelay} of 0 every flush goes out immediately.
+ * </p>
+ *
+ * <p>
+ * Unlike {@link FilterOutputStream}, arrays are passed on as a whole instead of byte by byte,
+ * and {@link #close()} closes the underlying stream even if the final flush fails.
+ * </p>
+ *
+ * @since 1.15
+ */
+public class CoalescingOutputStream extends FilterOutputStream {
+
+    private static final long LAN_ROUND_TRIP = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static ScheduledExecutorService timer;
+
+    private final byte[] buf;
+
+    private int count;
+
+    private final long maxDelay;
+
+    private final RttEstimator rtt;
+
+    private ScheduledFuture<?> pendingFlush;
+
+    private boolean closed;
+
+    /**
+     * @param threshold
+     *            Number of bytes collected before they are written out regardless of flushes.
+     * @param maxDelay
+     *            Longest time in nanoseconds a flush is held back.
+     * @param rtt
+     *            Round trip time to the master the window is derived from.
+     */
+    public CoalescingOutputStream(OutputStream out, int threshold, long maxDelay, RttEstimator rtt) {
+        super(out);
+        this.buf = new byte[threshold];
+        this.maxDelay = maxDelay;
+        this.rtt = rtt;
+    }
+
+    /**
+     * Current window in nanoseconds within which a flush goes out.
+     */
+    public long getFlushWindow() {
+        if (maxDelay <= 0) {
+            return 0;
+        }
+        long roundTrip = rtt.getRoundTripTime();
+        if (roundTrip <= 0) {
+            return maxDelay;
+        }
+        return roundTrip < LAN_ROUND_TRIP ? 0 : Math.min(maxDelay, roundTrip / 4);
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        ensureOpen();
+        if (count == buf.length) {
+            drain();
+        }
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len >= buf.length) {
+            // too big to be worth copying
+            drain();
+            out.write(b, off, len);
+            return;
+        }
+        if (len > buf.length - count) {
+            drain();
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        long window = getFlushWindow();
+        if (window <= 0) {
+            flushNow();
+        } else if (pendingFlush == null) {
+            pendingFlush = timer().schedule(new Runnable() {
+                public void run() {
+                    scheduledFlush();
+                }
+            }, window, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void scheduledFlush() {
+        if (closed || pendingFlush == null) {
+            return;
+        }
+        try {
+            flushNow();
+        } catch (IOException e) {
+            // the next write or flush on this stream runs into the same problem and reports it
+        }
+    }
+
+    /**
+     * Writes out what is collected, and flushes if a flush is pending.
+     */
+    private void drain() throws IOException {
+        if (pendingFlush != null) {
+            flushNow();
+        } else if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void flushNow() throws IOException {
+        if (pendingFlush != null) {
+            pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+        out.flush();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flushNow();
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "remoting flush coalescer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return timer;
+    }
+}
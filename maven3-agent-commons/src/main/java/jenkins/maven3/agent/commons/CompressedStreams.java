@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of the remoting link, for agents that talk to a master on another site.
+ *
+ * <p>
+ * The only codec is {@code deflate}: zlib streams that are sync flushed on every
+ * {@link OutputStream#flush()}, so that whatever remoting flushes reaches the other side
+ * right away rather than when the compressor's block is full. The level is taken from
+ * {@code jenkins.maven3.agent.transport.compression.level}, {@link Deflater#BEST_SPEED}
+ * by default, which already shrinks console output several times.
+ * </p>
+ *
+ * <p>
+ * Both sides have to agree on it, so the agent offers the codec with one byte, {@link #OFFER_DEFLATE},
+ * before anything else goes over the connection, and the master answers with {@link #ACK} to
+ * compress or {@link #NAK} to stay plain. A master that doesn't know the handshake skips the offer
+ * byte like any other noise in front of the remoting preamble, and sends that preamble instead of
+ * an answer, which the agent takes for a no.
+ * </p>
+ *
+ * @since 1.15
+ */
+public final class CompressedStreams {
+
+    public static final String DEFLATE = "deflate";
+
+    public static final int OFFER_DEFLATE = 0x01;
+
+    public static final int ACK = 0x06;
+
+    public static final int NAK = 0x15;
+
+    private static final int LEVEL = Integer.getInteger("jenkins.maven3.agent.transport.compression.level",
+            Deflater.BEST_SPEED);
+
+    private CompressedStreams() {
+    }
+
+    /**
+     * Offers the codec to the master and waits for its answer.
+     *
+     * @param in
+     *            Stream from the master. Whatever the master sent instead of an answer is pushed back.
+     * @return the codec both sides compress with, or null if the streams stay plain.
+     */
+    public static String negotiate(String codec, PushbackInputStream in, OutputStream out) throws IOException {
+        if (!DEFLATE.equals(codec)) {
+            System.err.println("Unsupported remoting compression " + codec + ", not compressing");
+            return null;
+        }
+        out.write(OFFER_DEFLATE);
+        out.flush();
+        int answer = in.read();
+        if (answer == ACK) {
+            return codec;
+        }
+        if (answer != NAK && answer >= 0) {
+            in.unread(answer);
+        }
+        return null;
+    }
+
+    public static OutputStream compress(String codec, OutputStream out, int bufferSize) throws IOException {
+        return compress(codec, out, bufferSize, LEVEL);
+    }
+
+    /**
+     * @param level
+     *            {@link Deflater} compression level.
+     */
+    public static OutputStream compress(String codec, OutputStream out, int bufferSize, int level)
+            throws IOException {
+        checkCodec(codec);
+        final Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(out, deflater, bufferSize, true) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    public static InputStream decompress(String codec, InputStream in, int bufferSize) throws IOException {
+        checkCodec(codec);
+        final Inflater inflater = new Inflater();
+        return new InflaterInputStream(in, inflater, bufferSize) {
+            /**
+             * The default claims a byte is available until the end of the stream, while
+             * the next read may well block for more input.
+             */
+            @Override
+            public int available() {
+                return 0;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static void checkCodec(String codec) throws IOException {
+        if (!DEFLATE.equals(codec)) {
+            throw new IOException("Unsupported remoting compression: " + codec);
+        }
+    }
+}
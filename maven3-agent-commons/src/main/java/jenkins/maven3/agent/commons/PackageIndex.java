@@ -0,0 +1,314 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Package-to-jar index for the {@code plexus.core} realm.
+ *
+ * <p>
+ * {@code plexus.core} is a {@link java.net.URLClassLoader} over every jar in
+ * {@code ${maven.home}/lib} and {@code lib/ext}, so a class lookup walks the jars one by one
+ * until it finds the class. The JDK can short-cut that with a jar index: when the first jar
+ * of a class loader carries a {@code META-INF/INDEX.LIST}, lookups go straight to the jars
+ * the index lists for the package, and only fall back to the linear scan when it has no answer.
+ * </p>
+ *
+ * <p>
+ * This writes such an index jar on first use. The agent's {@code classworlds.conf} puts it in
+ * front of {@code plexus.core} through the {@code maven3.agent.packageIndex} property. The index
+ * remembers the modification time and size of every jar it covers and is thrown away as soon
+ * as one of them changes; it is rebuilt for the next launch once the realm is configured.
+ * Jar indices are honoured up to JDK 17, later JDKs just ignore the extra jar.
+ * </p>
+ *
+ * @since 1.15
+ */
+public final class PackageIndex {
+
+    /**
+     * Set to {@code false} to neither build nor use the index.
+     */
+    public static final String ENABLED_PROPERTY = "jenkins.maven3.agent.packageIndex";
+
+    /**
+     * Directory the indices are kept in, defaults to {@code ${java.io.tmpdir}/jenkins-maven-index}.
+     */
+    public static final String DIR_PROPERTY = "jenkins.maven3.agent.packageIndex.dir";
+
+    /**
+     * Property the classworlds configuration refers to.
+     */
+    public static final String CLASSWORLDS_PROPERTY = "maven3.agent.packageIndex";
+
+    private static final String INDEX_NAME = "META-INF/INDEX.LIST";
+
+    private final File jar;
+
+    private final File stamps;
+
+    private final boolean enabled;
+
+    private PackageIndex(File dir, String key, boolean enabled) {
+        this.jar = new File(dir, key + ".jar");
+        this.stamps = new File(dir, key + ".stamps");
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param m2Home
+     *            Maven installation whose {@code plexus.core} realm is indexed.
+     * @param jars
+     *            Other jars that go into the realm, such as the interceptors.
+     */
+    @SuppressFBWarnings("PATH_TRAVERSAL_IN")
+    public static PackageIndex of(File m2Home, File... jars) throws IOException {
+        MessageDigest digest = sha1();
+        digest.update(m2Home.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+        for (File jar : jars) {
+            if (jar != null) {
+                digest.update((byte) 0);
+                digest.update(jar.getCanonicalPath().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        String dir = System.getProperty(DIR_PROPERTY);
+        File indexDir = dir != null ? new File(dir) : new File(System.getProperty("java.io.tmpdir"), "jenkins-maven-index");
+        boolean enabled = !"false".equals(System.getProperty(ENABLED_PROPERTY));
+        return new PackageIndex(indexDir, CdsArchive.toHex(digest.digest()), enabled);
+    }
+
+    /**
+     * Drops the index if any of the jars it covers changed, and exposes its location to the
+     * classworlds configuration. Call before {@code Launcher.configure}.
+     */
+    public void prepare() {
+        if (!enabled || !isUpToDate(readStamps())) {
+            delete();
+        }
+        System.setProperty(CLASSWORLDS_PROPERTY, jar.getPath());
+    }
+
+    /**
+     * Rebuilds the index if it doesn't cover the jars of the configured realm.
+     * Failures are not fatal, the realm works the same without an index.
+     */
+    public void update(ClassRealm realm) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<File> jars = new ArrayList<>();
+            for (URL url : realm.getURLs()) {
+                File f = toFile(url);
+                if (f != null && f.isFile() && f.getName().endsWith(".jar") && !f.equals(jar)) {
+                    jars.add(f);
+                }
+            }
+            List<String> current = stampsOf(jars);
+            if (jar.isFile() && current.equals(readStamps())) {
+                return;
+            }
+            write(jars, current);
+        } catch (IOException e) {
+            System.err.println("Failed to write the package index " + jar + ": " + e);
+            delete();
+        }
+    }
+
+    private void write(List<File> jars, List<String> current) throws IOException {
+        // package -> jars that have it, both in realm order
+        Map<String, Set<String>> packages = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>();
+        for (File f : jars) {
+            String name = f.toURI().toString();
+            names.add(name);
+            try (JarFile jf = new JarFile(f)) {
+                Enumeration<JarEntry> entries = jf.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry e = entries.nextElement();
+                    String entry = e.getName();
+                    if (e.isDirectory() || entry.equals(INDEX_NAME) || entry.equals(JarFile.MANIFEST_NAME)
+                            || entry.startsWith("META-INF/versions/")) {
+                        continue;
+                    }
+                    int slash = entry.lastIndexOf('/');
+                    if (slash < 0 && entry.endsWith(".jar")) {
+                        // would be taken for a jar name in INDEX.LIST
+                        continue;
+                    }
+                    // like the JDK's own jar tool, top-level files are indexed by name
+                    String pkg = slash < 0 ? entry : entry.substring(0, slash);
+                    Set<String> owners = packages.get(pkg);
+                    if (owners == null) {
+                        owners = new LinkedHashSet<>();
+                        packages.put(pkg, owners);
+                    }
+                    owners.add(name);
+                }
+            }
+        }
+
+        // INDEX.LIST lists the packages per jar
+        StringBuilder index = new StringBuilder("JarIndex-Version: 1.0\n\n");
+        for (String name : names) {
+            index.append(name).append('\n');
+            for (Map.Entry<String, Set<String>> e : packages.entrySet()) {
+                if (e.getValue().contains(name)) {
+                    index.append(e.getKey()).append('\n');
+                }
+            }
+            index.append('\n');
+        }
+
+        File dir = jar.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        File jarTmp = File.createTempFile("index", ".tmp", dir);
+        File stampsTmp = File.createTempFile("stamps", ".tmp", dir);
+        try {
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarTmp))) {
+                out.putNextEntry(new JarEntry(INDEX_NAME));
+                out.write(index.toString().getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+            try (Writer w = new OutputStreamWriter(new FileOutputStream(stampsTmp), StandardCharsets.UTF_8)) {
+                for (String s : current) {
+                    w.write(s);
+                    w.write('\n');
+                }
+            }
+            // the stamps go last: another agent reading them must find the index they describe
+            replace(jarTmp, jar);
+            replace(stampsTmp, stamps);
+        } finally {
+            for (File tmp : new File[] {jarTmp, stampsTmp}) {
+                if (tmp.exists() && !tmp.delete()) {
+                    tmp.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    private static void replace(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The index is only good if none of the jars it lists changed since it was written.
+     */
+    private boolean isUpToDate(List<String> recorded) {
+        if (recorded.isEmpty() || !jar.isFile()) {
+            return false;
+        }
+        List<File> jars = new ArrayList<>();
+        for (String s : recorded) {
+            jars.add(new File(s.substring(0, s.indexOf('\t'))));
+        }
+        return recorded.equals(stampsOf(jars));
+    }
+
+    private static List<String> stampsOf(List<File> jars) {
+        List<String> stamps = new ArrayList<>();
+        for (File f : jars) {
+            stamps.add(f.getPath() + '\t' + f.lastModified() + '\t' + f.length());
+        }
+        return stamps;
+    }
+
+    private List<String> readStamps() {
+        List<String> recorded = new ArrayList<>();
+        if (stamps.isFile()) {
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(stamps), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (line.indexOf('\t') > 0) {
+                        recorded.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                recorded.clear();
+            }
+        }
+        return recorded;
+    }
+
+    private void delete() {
+        if (jar.exists() && !jar.delete()) {
+            System.err.println("Failed to delete the stale package index " + jar);
+        }
+    }
+
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
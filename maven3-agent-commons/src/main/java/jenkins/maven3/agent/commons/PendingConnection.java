@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Connection to the master that is being opened in the background, so that connecting
+ * overlaps with the classworlds configuration instead of following it.
+ *
+ * <p>
+ * Failed attempts are retried with exponential backoff, tuned with the system properties
+ * {@code jenkins.maven3.agent.connect.retries} (3 by default),
+ * {@code jenkins.maven3.agent.connect.retryDelay} (first delay in milliseconds, 100 by default)
+ * and {@code jenkins.maven3.agent.connect.maxRetryDelay} (2000 by default).
+ * </p>
+ *
+ * @since 1.15
+ */
+public final class PendingConnection {
+
+    private static final int RETRIES = Integer.getInteger("jenkins.maven3.agent.connect.retries", 3);
+
+    private static final long RETRY_DELAY = Long.getLong("jenkins.maven3.agent.connect.retryDelay", 100);
+
+    private static final long MAX_RETRY_DELAY = Long.getLong("jenkins.maven3.agent.connect.maxRetryDelay", 2000);
+
+    private final FutureTask<AgentConnection> task;
+
+    private PendingConnection(FutureTask<AgentConnection> task) {
+        this.task = task;
+    }
+
+    /**
+     * Starts connecting to the given address on a separate thread.
+     */
+    public static PendingConnection start(final AgentAddress address, final BootstrapTimings timings) {
+        FutureTask<AgentConnection> task = new FutureTask<AgentConnection>(new Callable<AgentConnection>() {
+            public AgentConnection call() throws Exception {
+                timings.start(BootstrapTimings.SOCKET_CONNECT);
+                AgentConnection connection = connect(address);
+                timings.end(BootstrapTimings.SOCKET_CONNECT);
+                return connection;
+            }
+        });
+        Thread t = new Thread(task, "connecting to " + address);
+        t.setDaemon(true);
+        t.start();
+        return new PendingConnection(task);
+    }
+
+    private static AgentConnection connect(AgentAddress address) throws IOException, InterruptedException {
+        long delay = RETRY_DELAY;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return AgentConnection.open(address);
+            } catch (IOException e) {
+                if (attempt >= RETRIES) {
+                    throw e;
+                }
+                System.err.println("Failed to connect to " + address + ", retrying in " + delay + "ms: " + e);
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+            }
+        }
+    }
+
+    /**
+     * Throws the connection failure right away if connecting has given up already,
+     * so that the agent doesn't go on with a startup whose result can't be used.
+     */
+    public void checkFailed() throws IOException {
+        if (task.isDone()) {
+            get();
+        }
+    }
+
+    /**
+     * Waits for the connection.
+     */
+    public AgentConnection get() throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while connecting", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
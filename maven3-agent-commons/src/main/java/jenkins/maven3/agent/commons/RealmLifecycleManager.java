@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.classworlds.realm.NoSuchRealmException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps the {@link ClassWorld} of a long-lived agent JVM from filling up with realms.
+ *
+ * <p>
+ * Maven creates a child realm for each plugin, extension and project it loads. Like the
+ * Maven 2 agent, we take a snapshot of the realms before a launch and dispose whatever
+ * Maven created once it's done. Maven doesn't look for an existing realm before it creates
+ * a plugin realm, so keeping them around wouldn't save a later build anything; plugin realms
+ * survive a launch only when the launcher keeps its Plexus container, whose plugin realm
+ * cache hands them back to the next build.
+ * </p>
+ *
+ * <p>
+ * Launches that overlap share one snapshot, taken when the first of them starts, and what
+ * they created is disposed once the last of them is done: realms can't be told apart by the
+ * launch that created them, and one launch must not dispose a realm another is still using.
+ * </p>
+ *
+ * @since 1.15
+ */
+public class RealmLifecycleManager {
+
+    /**
+     * Set when the launcher keeps its Plexus container across builds, which then owns
+     * all the realms it creates. Only the Maven 3.5 launcher supports this.
+     */
+    public static final String CONTAINER_REUSE_PROPERTY = "jenkins.maven3.launcher.container.reuse";
+
+    private final ClassWorld world;
+
+    private Set<String> snapshot;
+
+    private int running;
+
+    private boolean leftToContainer;
+
+    public RealmLifecycleManager(ClassWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * Leaves the realms created by Maven to the kept Plexus container, which disposes them
+     * itself. Nothing gets disposed here from then on.
+     *
+     * @see #CONTAINER_REUSE_PROPERTY
+     */
+    public synchronized void leaveToContainer() {
+        leftToContainer = true;
+        snapshot = null;
+        running = 0;
+    }
+
+    /**
+     * Records the realms that exist before Maven runs, unless another launch is running.
+     */
+    public synchronized void beforeLaunch() {
+        if (leftToContainer) {
+            return;
+        }
+        if (running++ == 0) {
+            snapshot = realmIds();
+        }
+    }
+
+    /**
+     * Disposes the realms Maven created since the first {@link #beforeLaunch()} of the
+     * launches still running, once this is the last of them.
+     */
+    public synchronized void afterLaunch() {
+        if (snapshot == null || --running > 0) {
+            return;
+        }
+        Set<String> created = realmIds();
+        created.removeAll(snapshot);
+        snapshot = null;
+
+        for (String id : created) {
+            try {
+                world.disposeRealm(id);
+            } catch (NoSuchRealmException e) {
+                // already gone
+            }
+        }
+    }
+
+    /**
+     * Is the realm of the given ID to be left alone between launches?
+     */
+    public synchronized boolean isRetained(String realmId) {
+        return leftToContainer;
+    }
+
+    private Set<String> realmIds() {
+        Set<String> ids = new HashSet<>();
+        for (Object realm : world.getRealms()) {
+            ids.add(((ClassRealm) realm).getId());
+        }
+        return ids;
+    }
+}
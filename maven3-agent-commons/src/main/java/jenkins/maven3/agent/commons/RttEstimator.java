@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+/**
+ * Smoothed round trip time to the master, kept the way TCP does (RFC 6298): each sample
+ * moves the estimate by an eighth and the variation by a quarter of the difference.
+ *
+ * <p>
+ * Seeded from the time it took to connect, which is about one round trip, and fed by
+ * {@link RttProbe} and by whatever samples the master reports through the agent main.
+ * </p>
+ *
+ * @since 1.15
+ */
+public final class RttEstimator {
+
+    private static final RttEstimator INSTANCE = new RttEstimator();
+
+    private long smoothed;
+
+    private long variation;
+
+    private long samples;
+
+    RttEstimator() {
+    }
+
+    /**
+     * The estimator of this JVM.
+     */
+    public static RttEstimator get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Takes a first rough value, unless there is a better one already.
+     */
+    public synchronized void seed(long nanos) {
+        if (samples == 0 && smoothed == 0 && nanos > 0) {
+            smoothed = nanos;
+            variation = nanos / 2;
+        }
+    }
+
+    public synchronized void addSample(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+        if (samples == 0 && smoothed == 0) {
+            smoothed = nanos;
+            variation = nanos / 2;
+        } else {
+            variation = (3 * variation + Math.abs(smoothed - nanos)) / 4;
+            smoothed = (7 * smoothed + nanos) / 8;
+        }
+        samples++;
+    }
+
+    /**
+     * Forgets the round trip time to the master of a session that ended.
+     */
+    public synchronized void reset() {
+        smoothed = 0;
+        variation = 0;
+        samples = 0;
+    }
+
+    /**
+     * Smoothed round trip time in nanoseconds, 0 if not known.
+     */
+    public synchronized long getRoundTripTime() {
+        return smoothed;
+    }
+
+    /**
+     * Mean deviation of the round trip time in nanoseconds.
+     */
+    public synchronized long getVariation() {
+        return variation;
+    }
+
+    /**
+     * Number of samples taken, not counting the seed.
+     */
+    public synchronized long getSampleCount() {
+        return samples;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Measures the round trip time to the master with small pings, for {@link RttEstimator}.
+ *
+ * <p>
+ * The remoting stream has no room for pings of our own, so they go over a connection to the
+ * bulk address of {@link BulkTransport}, with a {@code JMP1} header followed by the token and
+ * the name {@code ping}. The agent then sends its {@link System#nanoTime()} as a long every
+ * {@code jenkins.maven3.agent.rtt.probeInterval} milliseconds and the master echoes it back.
+ * Off unless that interval and the bulk address are set.
+ * </p>
+ *
+ * <p>
+ * A probe belongs to one remoting session: it starts once the master of the session has
+ * handed over the token and stops when the session ends, so that a daemon agent probes the
+ * master it is currently serving.
+ * </p>
+ */
+final class RttProbe implements Runnable {
+
+    static final int MAGIC = 0x4A4D5031;
+
+    private static final long INTERVAL = Long.getLong("jenkins.maven3.agent.rtt.probeInterval", 0);
+
+    private static RttProbe current;
+
+    private final AgentAddress address;
+
+    private final Thread thread;
+
+    private volatile boolean stopped;
+
+    private RttProbe(AgentAddress address) {
+        this.address = address;
+        this.thread = new Thread(this, "remoting RTT probe");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts probing the given bulk address in place of the one probed so far, if probing is
+     * enabled.
+     */
+    static synchronized void start(AgentAddress address) {
+        stop();
+        if (INTERVAL > 0 && address != null) {
+            current = new RttProbe(address);
+            current.thread.start();
+        }
+    }
+
+    static synchronized void stop() {
+        if (current != null) {
+            current.stopped = true;
+            // closes the channel if the probe is waiting on it
+            current.thread.interrupt();
+            current = null;
+        }
+    }
+
+    public void run() {
+        try (SocketChannel channel = AgentConnection.openChannel(address)) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            BulkTransport.writeHeader(new DataOutputStream(header), MAGIC, "ping");
+            writeFully(channel, ByteBuffer.wrap(header.toByteArray()));
+
+            ByteBuffer ping = ByteBuffer.allocate(8);
+            ByteBuffer pong = ByteBuffer.allocate(8);
+            while (true) {
+                long sent = System.nanoTime();
+                ping.clear();
+                ping.putLong(sent).flip();
+                writeFully(channel, ping);
+                pong.clear();
+                while (pong.hasRemaining()) {
+                    if (channel.read(pong) < 0) {
+                        return;
+                    }
+                }
+                if (pong.getLong(0) == sent) {
+                    RttEstimator.get().addSample(System.nanoTime() - sent);
+                }
+                Thread.sleep(INTERVAL);
+            }
+        } catch (IOException e) {
+            if (!stopped) {
+                System.err.println("Stopped measuring the round trip time to the master: " + e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Traffic on the remoting link of an agent, to tell whether a slow build waits on the master.
+ *
+ * <p>
+ * Enabled with the system property {@code jenkins.maven3.agent.transport.metrics}. The counts
+ * are kept for the lifetime of the JVM, across the sessions of a daemon agent, published
+ * as the {@value #OBJECT_NAME} MBean, and printed to stderr when the JVM exits.
+ * Counted is what remoting writes and reads, before any compression or coalescing.
+ * </p>
+ *
+ * <p>
+ * Write latencies are what the writer sees. With the asynchronous writer stage that is
+ * the time it takes to hand the bytes over to it, so the time the writer thread spends
+ * writing to the socket is kept apart, see {@link #wrapSocketSide(OutputStream)}.
+ * </p>
+ *
+ * @since 1.15
+ */
+public final class TransportMetrics implements TransportMetricsMBean {
+
+    public static final String OBJECT_NAME = "jenkins.maven3.agent:type=RemotingTransport";
+
+    /**
+     * 2<sup>0</sup> to 2<sup>24</sup> microseconds, the last bucket takes everything above 16 seconds.
+     */
+    private static final int BUCKETS = 26;
+
+    private static TransportMetrics instance;
+
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong writeCalls = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong readCalls = new AtomicLong();
+    private final Latencies writeLatencies = new Latencies();
+    private final Latencies socketWriteLatencies = new Latencies();
+    private volatile long asyncQueueDepth;
+    private final AtomicLong maxAsyncQueueDepth = new AtomicLong();
+    private final AtomicLong asyncStallNanos = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+
+    private TransportMetrics() {
+    }
+
+    /**
+     * The metrics of this JVM, or null if they aren't enabled.
+     */
+    public static synchronized TransportMetrics get() {
+        if (instance == null && Boolean.getBoolean("jenkins.maven3.agent.transport.metrics")) {
+            instance = new TransportMetrics();
+            instance.register();
+            instance.printSummaryOnExit();
+        }
+        return instance;
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("Failed to register the remoting transport metrics: " + e);
+        }
+    }
+
+    private void printSummaryOnExit() {
+        Runtime.getRuntime().addShutdownHook(new Thread("remoting transport metrics summary") {
+            @Override
+            public void run() {
+                System.err.println(getSummary());
+            }
+        });
+    }
+
+    public String getSummary() {
+        String summary = String.format(Locale.ENGLISH,
+                "Remoting transport: wrote %d bytes in %d writes and %d flushes, blocked %d ms"
+                        + " (max %d ms, 99%% under %.3f ms); read %d bytes in %d reads",
+                getBytesWritten(), getWriteCalls(), getFlushes(), getWriteBlockedMillis(),
+                getMaxWriteMillis(), getWriteLatency99thPercentileMillis(), getBytesRead(), getReadCalls());
+        summary += String.format(Locale.ENGLISH, "; round trip %d us", getRoundTripTimeMicros());
+        if (getMaxAsyncQueueDepth() > 0) {
+            summary += String.format(Locale.ENGLISH, "; async queue up to %d bytes, stalled %d ms, spilled %d bytes",
+                    getMaxAsyncQueueDepth(), getAsyncStallMillis(), getSpilledBytes());
+            summary += String.format(Locale.ENGLISH, "; async writer blocked %d ms (max %d ms, 99%% under %.3f ms)",
+                    getSocketWriteMillis(), getMaxSocketWriteMillis(), getSocketWriteLatency99thPercentileMillis());
+        }
+        return summary;
+    }
+
+    public OutputStream wrap(OutputStream out) {
+        return new MeteredOutputStream(out);
+    }
+
+    /**
+     * Times the writes of the asynchronous writer stage to the stream it wraps, which
+     * the writer thread does on its own.
+     */
+    public OutputStream wrapSocketSide(OutputStream out) {
+        return new SocketSideOutputStream(out);
+    }
+
+    public InputStream wrap(InputStream in) {
+        return new MeteredInputStream(in);
+    }
+
+    void recordQueueDepth(long depth) {
+        asyncQueueDepth = depth;
+        updateMax(maxAsyncQueueDepth, depth);
+    }
+
+    void recordAsyncStall(long nanos) {
+        asyncStallNanos.addAndGet(nanos);
+    }
+
+    void recordSpill(long bytes) {
+        spilledBytes.addAndGet(bytes);
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public long getWriteCalls() {
+        return writeCalls.get();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getReadCalls() {
+        return readCalls.get();
+    }
+
+    public long getWriteBlockedMillis() {
+        return writeLatencies.getTotalMillis();
+    }
+
+    public long getMaxWriteMillis() {
+        return writeLatencies.getMaxMillis();
+    }
+
+    public long getAsyncQueueDepth() {
+        return asyncQueueDepth;
+    }
+
+    public long getMaxAsyncQueueDepth() {
+        return maxAsyncQueueDepth.get();
+    }
+
+    public long getAsyncStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(asyncStallNanos.get());
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    public long getRoundTripTimeMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(RttEstimator.get().getRoundTripTime());
+    }
+
+    public long getRoundTripTimeVariationMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(RttEstimator.get().getVariation());
+    }
+
+    public long[] getWriteLatencyHistogram() {
+        return writeLatencies.getHistogram();
+    }
+
+    public double getWriteLatency99thPercentileMillis() {
+        return writeLatencies.get99thPercentileMillis();
+    }
+
+    public long getSocketWriteMillis() {
+        return socketWriteLatencies.getTotalMillis();
+    }
+
+    public long getMaxSocketWriteMillis() {
+        return socketWriteLatencies.getMaxMillis();
+    }
+
+    public long[] getSocketWriteLatencyHistogram() {
+        return socketWriteLatencies.getHistogram();
+    }
+
+    public double getSocketWriteLatency99thPercentileMillis() {
+        return socketWriteLatencies.get99thPercentileMillis();
+    }
+
+    /**
+     * Total, maximum and histogram of the latencies of writes and flushes.
+     */
+    private static final class Latencies {
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            totalNanos.addAndGet(nanos);
+            updateMax(maxNanos, nanos);
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+            histogram.incrementAndGet(bucket);
+        }
+
+        long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.get());
+        }
+
+        long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        long[] getHistogram() {
+            long[] r = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                r[i] = histogram.get(i);
+            }
+            return r;
+        }
+
+        double get99thPercentileMillis() {
+            long[] counts = getHistogram();
+            long total = 0;
+            for (long n : counts) {
+                total += n;
+            }
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen * 100 >= total * 99) {
+                    return (1L << i) / 1000.0;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private final class MeteredOutputStream extends FilterOutputStream {
+        MeteredOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            writeLatencies.record(System.nanoTime() - start);
+            writeCalls.incrementAndGet();
+            bytesWritten.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            writeLatencies.record(System.nanoTime() - start);
+            writeCalls.incrementAndGet();
+            bytesWritten.addAndGet(len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            out.flush();
+            writeLatencies.record(System.nanoTime() - start);
+            flushes.incrementAndGet();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private final class SocketSideOutputStream extends FilterOutputStream {
+        SocketSideOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            socketWriteLatencies.record(System.nanoTime() - start);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            socketWriteLatencies.record(System.nanoTime() - start);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            out.flush();
+            socketWriteLatencies.record(System.nanoTime() - start);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private final class MeteredInputStream extends FilterInputStream {
+        MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            readCalls.incrementAndGet();
+            if (b >= 0) {
+                bytesRead.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            readCalls.incrementAndGet();
+            if (n > 0) {
+                bytesRead.addAndGet(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            bytesRead.addAndGet(skipped);
+            return skipped;
+        }
+    }
+}
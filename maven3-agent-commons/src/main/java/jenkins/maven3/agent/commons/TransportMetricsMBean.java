@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+/**
+ * JMX view of {@link TransportMetrics}.
+ *
+ * @since 1.15
+ */
+public interface TransportMetricsMBean {
+
+    long getBytesWritten();
+
+    long getWriteCalls();
+
+    long getFlushes();
+
+    long getBytesRead();
+
+    long getReadCalls();
+
+    /**
+     * Total time in milliseconds writers spent in writes and flushes to the master. With the
+     * asynchronous writer stage, that's the time it took to hand the bytes over to it.
+     */
+    long getWriteBlockedMillis();
+
+    long getMaxWriteMillis();
+
+    /**
+     * Bytes waiting in the asynchronous writer stage, if it is enabled.
+     */
+    long getAsyncQueueDepth();
+
+    long getMaxAsyncQueueDepth();
+
+    /**
+     * Total time in milliseconds writers waited for room in the asynchronous writer stage.
+     */
+    long getAsyncStallMillis();
+
+    long getSpilledBytes();
+
+    /**
+     * Smoothed round trip time to the master in microseconds, see {@link RttEstimator}.
+     */
+    long getRoundTripTimeMicros();
+
+    long getRoundTripTimeVariationMicros();
+
+    /**
+     * Number of writes and flushes by latency: element {@code i} counts the calls that took
+     * less than 2<sup>i</sup> microseconds, the last one all that took longer.
+     */
+    long[] getWriteLatencyHistogram();
+
+    /**
+     * Upper bound in milliseconds of the latency 99% of the writes and flushes stayed under.
+     */
+    double getWriteLatency99thPercentileMillis();
+
+    /**
+     * Total time in milliseconds the asynchronous writer stage spent writing and flushing
+     * to the master, 0 if it isn't enabled.
+     */
+    long getSocketWriteMillis();
+
+    long getMaxSocketWriteMillis();
+
+    /**
+     * Like {@link #getWriteLatencyHistogram()}, for the writes of the asynchronous writer stage.
+     */
+    long[] getSocketWriteLatencyHistogram();
+
+    double getSocketWriteLatency99thPercentileMillis();
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AgentAddressTest {
+
+    @Test
+    public void portOnly() {
+        AgentAddress a = AgentAddress.parse("4711");
+        assertFalse(a.isUnix());
+        assertNull(a.getHost());
+        assertEquals(4711, a.getPort());
+        assertEquals("4711", a.toString());
+    }
+
+    @Test
+    public void hostAndPort() {
+        AgentAddress a = AgentAddress.parse("master.example.com:4711");
+        assertEquals("master.example.com", a.getHost());
+        assertEquals(4711, a.getPort());
+        assertNull(a.getFallback());
+        assertEquals("master.example.com:4711", a.toString());
+    }
+
+    @Test
+    public void unixSocket() {
+        AgentAddress a = AgentAddress.parse("unix:/tmp/jenkins/agent.sock");
+        assertTrue(a.isUnix());
+        assertEquals("/tmp/jenkins/agent.sock", a.getUnixPath());
+        assertNull(a.getFallback());
+        assertEquals("unix:/tmp/jenkins/agent.sock", a.toString());
+    }
+
+    @Test
+    public void unixSocketWithHostFallback() {
+        AgentAddress a = AgentAddress.parse("unix:/tmp/jenkins/agent.sock,127.0.0.1:4711");
+        assertEquals("/tmp/jenkins/agent.sock", a.getUnixPath());
+        assertEquals("127.0.0.1", a.getFallback().getHost());
+        assertEquals(4711, a.getFallback().getPort());
+        assertFalse(a.getFallback().isUnix());
+        assertEquals("unix:/tmp/jenkins/agent.sock,127.0.0.1:4711", a.toString());
+    }
+
+    @Test
+    public void unixSocketWithPortFallback() {
+        AgentAddress a = AgentAddress.parse("unix:/tmp/jenkins/agent.sock,4711");
+        assertEquals("/tmp/jenkins/agent.sock", a.getUnixPath());
+        assertNull(a.getFallback().getHost());
+        assertEquals(4711, a.getFallback().getPort());
+    }
+
+    @Test
+    public void commaInTheUnixPath() {
+        AgentAddress a = AgentAddress.parse("unix:/tmp/job,1/agent.sock");
+        assertEquals("/tmp/job,1/agent.sock", a.getUnixPath());
+        assertNull(a.getFallback());
+
+        a = AgentAddress.parse("unix:/tmp/a,b.sock");
+        assertEquals("/tmp/a,b.sock", a.getUnixPath());
+        assertNull(a.getFallback());
+    }
+
+    @Test
+    public void commaInTheUnixPathAndFallback() {
+        AgentAddress a = AgentAddress.parse("unix:/tmp/job,1/agent.sock,localhost:4711");
+        assertEquals("/tmp/job,1/agent.sock", a.getUnixPath());
+        assertEquals("localhost", a.getFallback().getHost());
+        assertEquals(4711, a.getFallback().getPort());
+    }
+
+    @Test
+    public void existingSocketWhosePathEndsLikeAPort() throws Exception {
+        File dir = Files.createTempDirectory("agent-address").toFile();
+        File socket = new File(dir, "agent,4711");
+        try {
+            assertTrue(socket.createNewFile());
+            AgentAddress a = AgentAddress.parse("unix:" + socket.getPath());
+            assertEquals(socket.getPath(), a.getUnixPath());
+            assertNull(a.getFallback());
+        } finally {
+            socket.delete();
+            dir.delete();
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void notAnAddress() {
+        AgentAddress.parse("master.example.com");
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AgentDaemonTest {
+
+    private File dir;
+
+    private AgentDaemon daemon;
+
+    private AgentDaemon agent;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = new File(Files.createTempDirectory("agent-daemon").toFile(), "daemon");
+        daemon = AgentDaemon.open(dir);
+        agent = AgentDaemon.open(dir);
+        assertTrue(daemon.tryBecomeDaemon());
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        daemon.close();
+        agent.close();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+        dir.getParentFile().delete();
+    }
+
+    @Test
+    public void servesTheLaunchAndRelaysItsOutput() throws Exception {
+        ByteArrayOutputStream relayed = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(relayed, true));
+        try {
+            Future<Boolean> handedOver = handOver(launch("127.0.0.1:4242", "BUILD_NUMBER", "7"));
+
+            AgentDaemon.Session session = daemon.nextSession(TimeUnit.SECONDS.toMillis(10));
+            assertNotNull(session);
+            assertArrayEquals(new String[] {"m2", "remoting.jar", "interceptor.jar", "commons.jar", "127.0.0.1:4242"},
+                    session.getLaunch().getArgs());
+            assertEquals("7", session.getLaunch().getEnvironment().get("BUILD_NUMBER"));
+            assertEquals("8080", session.getLaunch().getSystemProperties().get("jenkins.port"));
+            session.getStdout().print("[INFO] BUILD SUCCESS");
+            session.finish(true);
+
+            assertTrue(handedOver.get(10, TimeUnit.SECONDS));
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals("[INFO] BUILD SUCCESS", new String(relayed.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(Collections.singletonList("daemon.lock"), Arrays.asList(dir.list()));
+    }
+
+    @Test
+    public void rejectedLaunchIsRunByItsAgent() throws Exception {
+        Future<Boolean> handedOver = handOver(launch("127.0.0.1:4242", "BUILD_NUMBER", "7"));
+
+        AgentDaemon.Session session = daemon.nextSession(TimeUnit.SECONDS.toMillis(10));
+        session.finish(false);
+
+        assertFalse(handedOver.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void givesUpBeingTheDaemonAfterTheTimeout() throws Exception {
+        assertNull(daemon.nextSession(200));
+        assertFalse(daemon.isDaemon());
+        assertTrue(agent.tryBecomeDaemon());
+    }
+
+    @Test
+    public void agentRunsTheLaunchItselfWhenTheDaemonExitsBeforeTakingIt() throws Exception {
+        Future<Boolean> handedOver = handOver(launch("127.0.0.1:4242", "BUILD_NUMBER", "7"));
+        daemon.close();
+
+        assertFalse(handedOver.get(10, TimeUnit.SECONDS));
+        assertTrue(agent.isDaemon());
+    }
+
+    @Test
+    public void failsWhenTheDaemonDiesDuringTheLaunch() throws Exception {
+        Future<Boolean> handedOver = handOver(launch("127.0.0.1:4242", "BUILD_NUMBER", "7"));
+        assertNotNull(daemon.nextSession(TimeUnit.SECONDS.toMillis(10)));
+        // what the agent sees of a daemon JVM that went away
+        daemon.close();
+
+        try {
+            handedOver.get(10, TimeUnit.SECONDS);
+            throw new AssertionError("expected the hand-over to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void onlyTheMasterAddressAndOtherPropertiesMayDiffer() {
+        AgentDaemon.Launch own = launch("127.0.0.1:4242", "BUILD_NUMBER", "7");
+
+        assertNull(own.mismatch(launch("127.0.0.1:4343", "BUILD_NUMBER", "7")));
+        assertNotNull(own.mismatch(launch("127.0.0.1:4242", "BUILD_NUMBER", "8")));
+
+        Map<String, String> properties = new HashMap<>(own.getSystemProperties());
+        properties.put(BulkTransport.ADDRESS_PROPERTY, "127.0.0.1:5555");
+        properties.put("user.dir", "/var/lib/jenkins/workspace/other");
+        assertNull(own.mismatch(new AgentDaemon.Launch(own.getArgs(), Collections.<String>emptyList(), properties,
+                own.getEnvironment())));
+        properties.put("jenkins.maven3.agent.transport.async", "block");
+        assertNotNull(own.mismatch(new AgentDaemon.Launch(own.getArgs(), Collections.<String>emptyList(), properties,
+                own.getEnvironment())));
+
+        assertNotNull(own.mismatch(new AgentDaemon.Launch(own.getArgs(), Collections.singletonList("-Xmx2g"),
+                own.getSystemProperties(), own.getEnvironment())));
+        String[] args = own.getArgs();
+        args[0] = "other-m2";
+        assertNotNull(own.mismatch(new AgentDaemon.Launch(args, Collections.<String>emptyList(),
+                own.getSystemProperties(), own.getEnvironment())));
+    }
+
+    private Future<Boolean> handOver(final AgentDaemon.Launch launch) {
+        return executor.submit(new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                return agent.handOver(launch);
+            }
+        });
+    }
+
+    private static AgentDaemon.Launch launch(String master, String variable, String value) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("java.home", "/usr/lib/jvm/java-8");
+        properties.put("jenkins.port", "8080");
+        properties.put(BulkTransport.ADDRESS_PROPERTY, "127.0.0.1:4444");
+        return new AgentDaemon.Launch(new String[] {"m2", "remoting.jar", "interceptor.jar", "commons.jar", master},
+                Collections.<String>emptyList(), properties, Collections.singletonMap(variable, value));
+    }
+}
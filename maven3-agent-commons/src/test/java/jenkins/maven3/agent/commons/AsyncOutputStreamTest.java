@@ -0,0 +1,215 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import jenkins.maven3.agent.commons.AsyncOutputStream.OverflowPolicy;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncOutputStreamTest {
+
+    @Test
+    public void keepsTheOrderOfTheBytes() throws Exception {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            Sink sink = new Sink();
+            byte[] data = randomBytes(100000);
+            try (AsyncOutputStream out = new AsyncOutputStream(sink, 1024, policy, null)) {
+                writeInRandomChunks(out, data);
+            }
+            assertArrayEquals(policy.toString(), data, sink.toByteArray());
+            assertTrue(sink.closed);
+        }
+    }
+
+    @Test
+    public void keepsTheOrderOfSingleBytes() throws Exception {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            Sink sink = new Sink();
+            sink.gate = new CountDownLatch(1);
+            byte[] data = randomBytes(4096);
+            try (AsyncOutputStream out = new AsyncOutputStream(sink, 1024, policy, null)) {
+                if (policy == OverflowPolicy.BLOCK) {
+                    sink.gate.countDown();
+                }
+                for (int i = 0; i < data.length; i++) {
+                    out.write(data[i]);
+                    if (i == 2048) {
+                        sink.gate.countDown();
+                    }
+                }
+            }
+            assertArrayEquals(policy.toString(), data, sink.toByteArray());
+        }
+    }
+
+    @Test
+    public void blockWaitsForRoomInTheBuffer() throws Exception {
+        Sink sink = new Sink();
+        sink.gate = new CountDownLatch(1);
+        final AsyncOutputStream out = new AsyncOutputStream(sink, 1024, OverflowPolicy.BLOCK, null);
+        final byte[] data = randomBytes(10 * 1024);
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    out.write(data);
+                    written.countDown();
+                } catch (IOException e) {
+                    // shows as a timeout below
+                }
+            }
+        };
+        writer.start();
+
+        assertFalse("the write should wait while the sink is stuck", written.await(200, TimeUnit.MILLISECONDS));
+        sink.gate.countDown();
+        assertTrue(written.await(10, TimeUnit.SECONDS));
+        out.close();
+        assertArrayEquals(data, sink.toByteArray());
+    }
+
+    @Test
+    public void spillNeverWaits() throws Exception {
+        Sink sink = new Sink();
+        sink.gate = new CountDownLatch(1);
+        byte[] data = randomBytes(64 * 1024);
+        AsyncOutputStream out = new AsyncOutputStream(sink, 1024, OverflowPolicy.SPILL, null);
+        // returns although the sink hasn't taken anything yet
+        writeInRandomChunks(out, data);
+        out.flush();
+
+        sink.gate.countDown();
+        out.close();
+        assertArrayEquals(data, sink.toByteArray());
+    }
+
+    @Test
+    public void flushReachesTheUnderlyingStream() throws Exception {
+        Sink sink = new Sink();
+        try (AsyncOutputStream out = new AsyncOutputStream(sink, 1024, OverflowPolicy.BLOCK, null)) {
+            out.write(randomBytes(100));
+            out.flush();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (sink.flushes.get() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, sink.flushes.get());
+            assertEquals(100, sink.size());
+        }
+    }
+
+    @Test
+    public void reportsTheFailureOfTheUnderlyingStream() throws Exception {
+        Sink sink = new Sink();
+        sink.failure = new IOException("connection reset");
+        AsyncOutputStream out = new AsyncOutputStream(sink, 1024, OverflowPolicy.BLOCK, null);
+        out.write(randomBytes(100));
+        out.flush();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                out.write(randomBytes(100));
+                Thread.sleep(10);
+            }
+            fail("writes should fail once the writer thread has failed");
+        } catch (IOException e) {
+            assertEquals(sink.failure, e.getCause());
+        }
+        try {
+            out.close();
+            fail();
+        } catch (IOException e) {
+            assertEquals(sink.failure, e.getCause());
+        }
+    }
+
+    private static void writeInRandomChunks(OutputStream out, byte[] data) throws IOException {
+        Random random = new Random(42);
+        int off = 0;
+        while (off < data.length) {
+            int len = Math.min(data.length - off, 1 + random.nextInt(3000));
+            out.write(data, off, len);
+            off += len;
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Collects what the writer thread sends, optionally holding it until the gate opens.
+     */
+    private static final class Sink extends ByteArrayOutputStream {
+        volatile CountDownLatch gate;
+        volatile IOException failure;
+        final AtomicInteger flushes = new AtomicInteger();
+        volatile boolean closed;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            await();
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            flushes.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        private void await() {
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
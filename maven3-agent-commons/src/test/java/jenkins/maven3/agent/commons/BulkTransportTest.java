@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BulkTransportTest {
+
+    private ServerSocket server;
+
+    private ExecutorService master;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        BulkTransport.startSession("127.0.0.1:" + server.getLocalPort());
+        BulkTransport.setToken("s3cret");
+        master = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        BulkTransport.endSession();
+        master.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    public void payload() throws Exception {
+        Future<byte[]> received = master.submit(new Callable<byte[]>() {
+            public byte[] call() throws Exception {
+                try (Socket s = server.accept()) {
+                    DataInputStream in = new DataInputStream(s.getInputStream());
+                    assertEquals(BulkTransport.MAGIC, in.readInt());
+                    assertEquals("s3cret", in.readUTF());
+                    assertEquals("surefire-reports", in.readUTF());
+                    ByteArrayOutputStream payload = new ByteArrayOutputStream();
+                    byte[] buf = new byte[8192];
+                    int n;
+                    while ((n = in.read(buf)) >= 0) {
+                        payload.write(buf, 0, n);
+                    }
+                    s.getOutputStream().write(0);
+                    return payload.toByteArray();
+                }
+            }
+        });
+
+        byte[] data = randomBytes(100000);
+        try (OutputStream out = BulkTransport.open("surefire-reports")) {
+            out.write(data);
+        }
+        assertArrayEquals(data, received.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectedPayload() throws Exception {
+        master.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                try (Socket s = server.accept()) {
+                    s.getOutputStream().write(1);
+                    s.getInputStream().read(new byte[8192]);
+                }
+                return null;
+            }
+        });
+
+        try (OutputStream out = BulkTransport.open("surefire-reports")) {
+            out.write(randomBytes(10));
+        }
+    }
+
+    @Test
+    public void files() throws Exception {
+        File dir = Files.createTempDirectory("bulk-transport").toFile();
+        try {
+            final Map<String, byte[]> contents = new LinkedHashMap<>();
+            contents.put("a.jar", randomBytes(300000));
+            contents.put("empty.pom", new byte[0]);
+            contents.put("b.jar", randomBytes(70000));
+            Map<String, File> files = new LinkedHashMap<>();
+            for (Map.Entry<String, byte[]> e : contents.entrySet()) {
+                File f = new File(dir, e.getKey());
+                try (OutputStream out = new FileOutputStream(f)) {
+                    out.write(e.getValue());
+                }
+                files.put(e.getKey(), f);
+            }
+
+            Future<Void> received = master.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    try (Socket s = server.accept()) {
+                        DataInputStream in = new DataInputStream(s.getInputStream());
+                        assertEquals(BulkTransport.FILES_MAGIC, in.readInt());
+                        assertEquals("s3cret", in.readUTF());
+                        assertEquals("artifacts", in.readUTF());
+                        assertEquals(contents.size(), in.readInt());
+                        for (Map.Entry<String, byte[]> e : contents.entrySet()) {
+                            assertEquals(e.getKey(), in.readUTF());
+                            byte[] data = new byte[(int) in.readLong()];
+                            in.readFully(data);
+                            assertArrayEquals(e.getValue(), data);
+                            CRC32 crc = new CRC32();
+                            crc.update(data);
+                            assertEquals(crc.getValue(), in.readLong());
+                        }
+                        assertEquals(-1, in.read());
+                        s.getOutputStream().write(0);
+                    }
+                    return null;
+                }
+            });
+
+            assertEquals(370000, BulkTransport.sendFiles("artifacts", files));
+            received.get();
+        } finally {
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
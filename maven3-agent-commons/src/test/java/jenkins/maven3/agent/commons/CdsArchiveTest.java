@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CdsArchiveTest {
+
+    private File tmp;
+
+    private File javaHome;
+
+    private File m2Home;
+
+    private File interceptor;
+
+    @Before
+    public void setUp() throws Exception {
+        tmp = Files.createTempDirectory("cds-archive").toFile();
+        System.setProperty(CdsArchive.DIR_PROPERTY, new File(tmp, "archives").getPath());
+        javaHome = new File(tmp, "jdk");
+        release(javaHome, "17.0.9");
+        m2Home = new File(tmp, "maven");
+        write(new File(m2Home, "boot/plexus-classworlds-2.6.0.jar"), "classworlds");
+        write(new File(m2Home, "lib/maven-core-3.5.4.jar"), "core");
+        write(new File(m2Home, "lib/ext/extension.jar"), "extension");
+        interceptor = new File(tmp, "maven35-interceptor.jar");
+        write(interceptor, "interceptor");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(CdsArchive.DIR_PROPERTY);
+        delete(tmp);
+    }
+
+    @Test
+    public void featureVersion() {
+        assertEquals(8, CdsArchive.featureVersion("1.8.0_292"));
+        assertEquals(11, CdsArchive.featureVersion("11.0.21"));
+        assertEquals(17, CdsArchive.featureVersion("17"));
+        assertEquals(21, CdsArchive.featureVersion("21-ea"));
+        assertEquals(22, CdsArchive.featureVersion("22+36"));
+        assertEquals(0, CdsArchive.featureVersion(""));
+        assertEquals(0, CdsArchive.featureVersion("unknown"));
+    }
+
+    @Test
+    public void sameInstallationSameArchive() throws Exception {
+        assertEquals(archive(), archive());
+    }
+
+    @Test
+    public void libJarChangesTheArchive() throws Exception {
+        File before = archive();
+        write(new File(m2Home, "lib/maven-core-3.5.4.jar"), "patched core");
+        assertNotEquals(before, archive());
+    }
+
+    @Test
+    public void extensionChangesTheArchive() throws Exception {
+        File before = archive();
+        write(new File(m2Home, "lib/ext/another-extension.jar"), "extension");
+        assertNotEquals(before, archive());
+    }
+
+    @Test
+    public void bootJarChangesTheArchive() throws Exception {
+        File before = archive();
+        write(new File(m2Home, "boot/plexus-classworlds-2.6.0.jar"), "newer classworlds");
+        assertNotEquals(before, archive());
+    }
+
+    @Test
+    public void interceptorChangesTheArchive() throws Exception {
+        File before = archive();
+        // same length, other content
+        write(interceptor, "INTERCEPTOR");
+        assertNotEquals(before, archive());
+    }
+
+    @Test
+    public void jdkChangesTheArchive() throws Exception {
+        File before = archive();
+        release(javaHome, "17.0.10");
+        assertNotEquals(before, archive());
+    }
+
+    @Test
+    public void recordsFirstThenMaps() throws Exception {
+        CdsArchive archive = CdsArchive.of(javaHome, m2Home, interceptor);
+        assertTrue(archive.isSupported());
+        assertEquals(Collections.singletonList("-XX:ArchiveClassesAtExit=" + archive.getFile().getPath()),
+                archive.getJvmOptions());
+
+        write(archive.getFile(), "archive");
+        assertEquals(Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + archive.getFile().getPath()),
+                archive.getJvmOptions());
+    }
+
+    @Test
+    public void notSupportedBeforeJdk13() throws Exception {
+        release(javaHome, "11.0.21");
+        CdsArchive archive = CdsArchive.of(javaHome, m2Home, interceptor);
+        assertFalse(archive.isSupported());
+        assertTrue(archive.getJvmOptions().isEmpty());
+    }
+
+    private File archive() throws IOException {
+        return CdsArchive.of(javaHome, m2Home, interceptor).getFile();
+    }
+
+    private static void release(File javaHome, String version) throws IOException {
+        write(new File(javaHome, "release"), "IMPLEMENTOR=\"Eclipse Adoptium\"\nJAVA_VERSION=\"" + version + "\"\n");
+    }
+
+    private static void write(File f, String content) throws IOException {
+        f.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(f)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+}
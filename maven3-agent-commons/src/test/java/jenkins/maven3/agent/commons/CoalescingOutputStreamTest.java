@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingOutputStreamTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void collectsWritesUpToTheThreshold() throws Exception {
+        Sink sink = new Sink();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink, 16, 0, new RttEstimator());
+        out.write(new byte[10]);
+        out.write(1);
+        assertEquals(0, sink.size());
+
+        out.write(new byte[10]);
+        assertEquals(11, sink.size());
+        assertEquals(1, sink.writes);
+    }
+
+    @Test
+    public void passesLargeWritesOnAsAWhole() throws Exception {
+        Sink sink = new Sink();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink, 16, 0, new RttEstimator());
+        out.write(new byte[4]);
+        out.write(new byte[64]);
+        assertEquals(68, sink.size());
+        assertEquals(2, sink.writes);
+    }
+
+    @Test
+    public void flushesRightAwayWithoutMaxDelay() throws Exception {
+        Sink sink = new Sink();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink, 16, 0, new RttEstimator());
+        out.write(new byte[4]);
+        out.flush();
+        assertEquals(4, sink.size());
+        assertEquals(1, sink.flushes);
+    }
+
+    @Test
+    public void flushesRightAwayOnALan() throws Exception {
+        RttEstimator rtt = new RttEstimator();
+        rtt.addSample(200 * 1000);
+        Sink sink = new Sink();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink, 16, 50 * MILLIS, rtt);
+        assertEquals(0, out.getFlushWindow());
+        out.write(new byte[4]);
+        out.flush();
+        assertEquals(1, sink.flushes);
+    }
+
+    @Test
+    public void flushWindowIsAQuarterOfTheRoundTripUpToMaxDelay() {
+        RttEstimator rtt = new RttEstimator();
+        CoalescingOutputStream out = new CoalescingOutputStream(new Sink(), 16, 10 * MILLIS, rtt);
+        // nothing measured yet
+        assertEquals(10 * MILLIS, out.getFlushWindow());
+        rtt.addSample(8 * MILLIS);
+        assertEquals(2 * MILLIS, out.getFlushWindow());
+        for (int i = 0; i < 100; i++) {
+            rtt.addSample(200 * MILLIS);
+        }
+        assertEquals(10 * MILLIS, out.getFlushWindow());
+    }
+
+    @Test
+    public void coalescesTheFlushesWithinTheWindow() throws Exception {
+        RttEstimator rtt = new RttEstimator();
+        rtt.addSample(200 * MILLIS);
+        Sink sink = new Sink();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink, 1024, 20 * MILLIS, rtt);
+        for (int i = 0; i < 5; i++) {
+            out.write(new byte[10]);
+            out.flush();
+        }
+        assertEquals(0, sink.getFlushes());
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (sink.getFlushes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, sink.getFlushes());
+        assertEquals(50, sink.size());
+    }
+
+    @Test
+    public void writingPastTheThresholdSendsThePendingFlush() throws Exception {
+        RttEstimator rtt = new RttEstimator();
+        rtt.addSample(200 * MILLIS);
+        Sink sink = new Sink();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink, 16, 10000 * MILLIS, rtt);
+        out.write(new byte[10]);
+        out.flush();
+        out.write(new byte[10]);
+        assertEquals(10, sink.size());
+        assertEquals(1, sink.getFlushes());
+    }
+
+    @Test
+    public void closeSendsWhatIsPending() throws Exception {
+        RttEstimator rtt = new RttEstimator();
+        rtt.addSample(200 * MILLIS);
+        Sink sink = new Sink();
+        CoalescingOutputStream out = new CoalescingOutputStream(sink, 16, 10000 * MILLIS, rtt);
+        out.write(new byte[10]);
+        out.flush();
+        out.close();
+        assertEquals(10, sink.size());
+        assertEquals(1, sink.getFlushes());
+        assertTrue(sink.closed);
+    }
+
+    private static final class Sink extends ByteArrayOutputStream {
+        int writes;
+        int flushes;
+        boolean closed;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            writes++;
+            super.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void flush() {
+            flushes++;
+        }
+
+        synchronized int getFlushes() {
+            return flushes;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
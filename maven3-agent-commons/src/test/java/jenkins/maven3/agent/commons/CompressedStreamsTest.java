@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompressedStreamsTest {
+
+    private static final byte[] PREAMBLE = "<===[JENKINS REMOTING CAPACITY]===>".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void compressesWhenTheMasterAccepts() throws Exception {
+        ByteArrayOutputStream offer = new ByteArrayOutputStream();
+        PushbackInputStream in = answer(CompressedStreams.ACK);
+
+        assertEquals(CompressedStreams.DEFLATE, CompressedStreams.negotiate(CompressedStreams.DEFLATE, in, offer));
+        assertArrayEquals(new byte[] {CompressedStreams.OFFER_DEFLATE}, offer.toByteArray());
+        assertEquals('<', in.read());
+    }
+
+    @Test
+    public void staysPlainWhenTheMasterDeclines() throws Exception {
+        PushbackInputStream in = answer(CompressedStreams.NAK);
+
+        assertNull(CompressedStreams.negotiate(CompressedStreams.DEFLATE, in, new ByteArrayOutputStream()));
+        assertEquals('<', in.read());
+    }
+
+    @Test
+    public void staysPlainWithAMasterThatDoesNotKnowTheHandshake() throws Exception {
+        PushbackInputStream in = new PushbackInputStream(new ByteArrayInputStream(PREAMBLE), 1);
+
+        assertNull(CompressedStreams.negotiate(CompressedStreams.DEFLATE, in, new ByteArrayOutputStream()));
+        byte[] read = new byte[PREAMBLE.length];
+        assertEquals(PREAMBLE.length, in.read(read));
+        assertArrayEquals(PREAMBLE, read);
+    }
+
+    @Test
+    public void doesNotOfferAnUnknownCodec() throws Exception {
+        ByteArrayOutputStream offer = new ByteArrayOutputStream();
+
+        assertNull(CompressedStreams.negotiate("lz4", answer(CompressedStreams.ACK), offer));
+        assertEquals(0, offer.size());
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        byte[] data = "[INFO] BUILD SUCCESS\n".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = CompressedStreams.compress(CompressedStreams.DEFLATE, compressed, 512)) {
+            out.write(data);
+            out.flush();
+        }
+        byte[] read = new byte[data.length];
+        try (InputStream in = CompressedStreams.decompress(CompressedStreams.DEFLATE,
+                new ByteArrayInputStream(compressed.toByteArray()), 512)) {
+            int n = 0;
+            while (n < read.length) {
+                n += in.read(read, n, read.length - n);
+            }
+        }
+        assertArrayEquals(data, read);
+    }
+
+    private static PushbackInputStream answer(int answer) {
+        byte[] bytes = new byte[PREAMBLE.length + 1];
+        bytes[0] = (byte) answer;
+        System.arraycopy(PREAMBLE, 0, bytes, 1, PREAMBLE.length);
+        return new PushbackInputStream(new ByteArrayInputStream(bytes), 1);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2026, Jenkins project contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package jenkins.maven3.agent.commons;
+
+import org.codehaus.plexus.classworlds.ClassWorld;
+import org.codehaus.plexus.classworlds.realm.NoSuchRealmException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class RealmLifecycleManagerTest {
+
+    private ClassWorld world;
+
+    @Before
+    public void setUp() throws Exception {
+        world = new ClassWorld("plexus.core", getClass().getClassLoader());
+    }
+
+    @Test
+    public void disposesTheRealmsCreatedDuringTheLaunch() throws Exception {
+        RealmLifecycleManager realms = new RealmLifecycleManager(world);
+        realms.beforeLaunch();
+        world.newRealm("plugin>org.apache.maven.plugins:maven-compiler-plugin:3.8.1");
+        world.getRealm("plexus.core").createChildRealm("project>g:a:1.0");
+        realms.afterLaunch();
+
+        assertEquals(1, world.getRealms().size());
+        assertNotNull(world.getRealm("plexus.core"));
+    }
+
+    @Test
+    public void keepsRealmsCreatedBeforeTheLaunch() throws Exception {
+        world.newRealm("hudson-remoting");
+        RealmLifecycleManager realms = new RealmLifecycleManager(world);
+        realms.beforeLaunch();
+        world.newRealm("plugin>g:a:1.0");
+        realms.afterLaunch();
+
+        assertNotNull(world.getRealm("hudson-remoting"));
+        assertEquals(2, world.getRealms().size());
+    }
+
+    @Test
+    public void afterLaunchWithoutBeforeLaunchDisposesNothing() throws Exception {
+        RealmLifecycleManager realms = new RealmLifecycleManager(world);
+        world.newRealm("plugin>g:a:1.0");
+        realms.afterLaunch();
+
+        assertNotNull(world.getRealm("plugin>g:a:1.0"));
+    }
+
+    @Test
+    public void keepsTheRealmsUntilTheLastOverlappingLaunchIsDone() throws Exception {
+        RealmLifecycleManager realms = new RealmLifecycleManager(world);
+        realms.beforeLaunch();
+        world.newRealm("plugin>g:first:1.0");
+        realms.beforeLaunch();
+        world.newRealm("plugin>g:second:1.0");
+        realms.afterLaunch();
+
+        assertNotNull(world.getRealm("plugin>g:first:1.0"));
+        assertNotNull(world.getRealm("plugin>g:second:1.0"));
+
+        realms.afterLaunch();
+
+        assertEquals(1, world.getRealms().size());
+    }
+
+    @Test
+    public void leavesEverythingToTheContainer() throws Exception {
+        RealmLifecycleManager realms = new RealmLifecycleManager(world);
+        assertFalse(realms.isRetained("plugin>g:a:1.0"));
+
+        realms.leaveToContainer();
+        realms.beforeLaunch();
+        world.newRealm("plugin>g:a:1.0");
+        realms.afterLaunch();
+
+        assertNotNull(world.getRealm("plugin>g:a:1.0"));
+        assertTrue(realms.isRetained("plugin>g:a:1.0"));
+    }
+
+    @Test(expected = NoSuchRealmException.class)
+    public void disposedRealmsAreGone() throws Exception {
+        RealmLifecycleManager realms = new RealmLifecycleManager(world);
+        realms.beforeLaunch();
+        world.newRealm("extension>g:a:1.0");
+        realms.afterLaunch();
+
+        world.getRealm("extension>g:a:1.0");
+    }
+}
@@ -0,0 +1,260 @@
+package org.jvnet.hudson.maven3.launcher;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.maven.eventspy.EventSpy;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionResult;
+import org.jvnet.hudson.maven3.listeners.ExecutionEventSnapshot;
+
+/**
+ * Hands the events for the spies supplied by Jenkins over to a single dispatcher thread, so
+ * that the builder threads don't wait for the spies and the remoting calls they make.
+ * <p>
+ * All events go through one bounded queue, so every spy sees them in the order they were
+ * fired. When the queue is full, the firing thread waits. The {@link MavenExecutionRequest}
+ * and {@link MavenExecutionResult} events, as well as {@link #init(Context)} and
+ * {@link #close()}, are delivered on the calling thread once the queue has been drained, as
+ * spies may change the request and the build is expected to be fully reported when it ends.
+ * An {@link ExecutionEvent} is queued as an {@link ExecutionEventSnapshot}, as it reads the
+ * session and its current project when it is looked at, which by then would be another
+ * project or another mojo. A spy that has to act before the mojo runs can't be dispatched
+ * asynchronously.
+ * <p>
+ * A failure of a spy on the dispatcher thread is thrown by the next call made on this spy,
+ * so that {@code EventSpyDispatcher} still logs it.
+ *
+ * @since 1.15
+ */
+public class AsyncEventSpy
+    implements EventSpy
+{
+
+    /**
+     * Set to dispatch the events to the Jenkins event spies asynchronously.
+     */
+    public static final String ASYNC_PROPERTY = "jenkins.maven3.launcher.eventSpy.async";
+
+    /**
+     * Number of events that may be waiting for the dispatcher thread, 1024 by default.
+     */
+    public static final String QUEUE_SIZE_PROPERTY = "jenkins.maven3.launcher.eventSpy.queueSize";
+
+    private static final Object STOP = new Object();
+
+    private final List<EventSpy> spies;
+
+    private final BlockingQueue<Object> queue;
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final Thread dispatcher;
+
+    public AsyncEventSpy( List<EventSpy> spies, int capacity )
+    {
+        this.spies = new ArrayList<>( spies );
+        this.queue = new ArrayBlockingQueue<>( capacity );
+        this.dispatcher = new Thread( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                dispatch();
+            }
+        }, "Jenkins event spy dispatcher" );
+        dispatcher.setDaemon( true );
+        dispatcher.start();
+    }
+
+    /**
+     * Wraps the given spies into one asynchronous spy if {@link #ASYNC_PROPERTY} is set.
+     */
+    public static List<EventSpy> wrapIfEnabled( List<EventSpy> spies )
+    {
+        if ( !Boolean.getBoolean( ASYNC_PROPERTY ) || spies.isEmpty() )
+        {
+            return spies;
+        }
+        List<EventSpy> wrapped = new ArrayList<>( 1 );
+        wrapped.add( new AsyncEventSpy( spies, Integer.getInteger( QUEUE_SIZE_PROPERTY, 1024 ) ) );
+        return wrapped;
+    }
+
+    @Override
+    public void init( Context context )
+        throws Exception
+    {
+        flush();
+        for ( EventSpy spy : spies )
+        {
+            spy.init( context );
+        }
+        checkFailure();
+    }
+
+    @Override
+    public void onEvent( Object event )
+        throws Exception
+    {
+        if ( event instanceof MavenExecutionRequest || event instanceof MavenExecutionResult )
+        {
+            flush();
+            for ( EventSpy spy : spies )
+            {
+                spy.onEvent( event );
+            }
+        }
+        else if ( event instanceof ExecutionEvent )
+        {
+            queue.put( new ExecutionEventSnapshot( (ExecutionEvent) event ) );
+        }
+        else
+        {
+            queue.put( event );
+        }
+        checkFailure();
+    }
+
+    @Override
+    public void close()
+        throws Exception
+    {
+        flush();
+        stop();
+        for ( EventSpy spy : spies )
+        {
+            spy.close();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stops the dispatcher thread once the events queued so far are delivered. Used when the
+     * build ends without {@link #close()} being called.
+     */
+    public void stop()
+        throws InterruptedException
+    {
+        if ( dispatcher.isAlive() )
+        {
+            queue.put( STOP );
+            dispatcher.join();
+        }
+    }
+
+    /**
+     * Stops the dispatcher threads of the asynchronous spies among the given ones, which may be
+     * null.
+     */
+    public static void stopAll( List<EventSpy> spies )
+        throws InterruptedException
+    {
+        if ( spies != null )
+        {
+            for ( EventSpy spy : spies )
+            {
+                if ( spy instanceof AsyncEventSpy )
+                {
+                    ( (AsyncEventSpy) spy ).stop();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the events queued so far are delivered.
+     */
+    private void flush()
+        throws InterruptedException
+    {
+        if ( !dispatcher.isAlive() )
+        {
+            return;
+        }
+        Flush delivered = new Flush();
+        queue.put( delivered );
+        delivered.await();
+    }
+
+    private void checkFailure()
+        throws Exception
+    {
+        Throwable t = failure.getAndSet( null );
+        if ( t != null )
+        {
+            throw new Exception( "Event spy failed on the dispatcher thread", t );
+        }
+    }
+
+    private void dispatch()
+    {
+        while ( true )
+        {
+            Object event;
+            try
+            {
+                event = queue.take();
+            }
+            catch ( InterruptedException e )
+            {
+                return;
+            }
+            if ( event == STOP )
+            {
+                return;
+            }
+            if ( event instanceof Flush )
+            {
+                ( (Flush) event ).countDown();
+                continue;
+            }
+            for ( EventSpy spy : spies )
+            {
+                try
+                {
+                    spy.onEvent( event );
+                }
+                catch ( Throwable t )
+                {
+                    // keep the first one until it is reported
+                    failure.compareAndSet( null, t );
+                }
+            }
+        }
+    }
+
+    private static final class Flush
+        extends CountDownLatch
+    {
+        Flush()
+        {
+            super( 1 );
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.jvnet.hudson.maven3.launcher;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.eventspy.EventSpy;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.jvnet.hudson.maven3.listeners.HudsonMavenExecutionResult;
+import org.jvnet.hudson.maven3.listeners.MojoProfiler;
+import org.jvnet.hudson.maven3.listeners.ProjectResultListener;
+
+/**
+ * The state the Jenkins launchers exchange with the master for one Maven execution: the
+ * listeners and the event spies going in, and the result coming out.
+ * <p>
+ * The static accessors of the launchers read and write the context {@link #open() opened} by
+ * the current thread. A thread that doesn't open one shares a single default context, which
+ * is how the launchers always behaved. To run several executions in one JVM at the same time,
+ * each thread opens its own context before setting up the launcher, and
+ * {@link #close() closes} it after it has read the result:
+ *
+ * <pre>
+ * LauncherContext context = LauncherContext.open();
+ * try {
+ *     Maven35Launcher.setMavenExecutionListener( listener );
+ *     Maven35Main.launch( goals );
+ *     result = Maven35Launcher.getMavenExecutionResult();
+ * } finally {
+ *     context.close();
+ * }
+ * </pre>
+ *
+ * The launchers still share what is global to the JVM, such as the system properties and
+ * {@code System.out}, which the command line of each execution sets.
+ *
+ * @since 1.15
+ */
+public final class LauncherContext
+{
+
+    private static final LauncherContext DEFAULT = new LauncherContext( null );
+
+    private static final ThreadLocal<LauncherContext> CURRENT = new ThreadLocal<>();
+
+    private volatile ExecutionListener mavenExecutionListener;
+
+    private volatile List<EventSpy> eventSpies;
+
+    private volatile Set<ExecutionEvent.Type> executionEventInterest;
+
+    private volatile Collection<String> eventSpyInterest;
+
+    private volatile ProjectResultListener projectResultListener;
+
+    private volatile MojoProfiler mojoProfiler;
+
+    private volatile HudsonMavenExecutionResult mavenExecutionResult;
+
+    private volatile Map<String, Long> startupTimings = Collections.emptyMap();
+
+    /**
+     * The context the thread had opened before this one, or null.
+     */
+    private final LauncherContext previous;
+
+    private LauncherContext( LauncherContext previous )
+    {
+        this.previous = previous;
+    }
+
+    /**
+     * Returns the context opened by the current thread, or the default context.
+     */
+    public static LauncherContext current()
+    {
+        LauncherContext context = CURRENT.get();
+        return context != null ? context : DEFAULT;
+    }
+
+    /**
+     * Opens a new context for the current thread, in place of the one it may have opened
+     * before until this one is closed.
+     */
+    public static LauncherContext open()
+    {
+        LauncherContext context = new LauncherContext( CURRENT.get() );
+        CURRENT.set( context );
+        return context;
+    }
+
+    /**
+     * The current thread goes back to the context it had opened before this one, or to the
+     * default context.
+     */
+    public void close()
+    {
+        if ( CURRENT.get() != this )
+        {
+            return;
+        }
+        if ( previous != null )
+        {
+            CURRENT.set( previous );
+        }
+        else
+        {
+            CURRENT.remove();
+        }
+    }
+
+    public ExecutionListener getMavenExecutionListener()
+    {
+        return mavenExecutionListener;
+    }
+
+    public void setMavenExecutionListener( ExecutionListener listener )
+    {
+        this.mavenExecutionListener = listener;
+    }
+
+    public List<EventSpy> getEventSpies()
+    {
+        return eventSpies;
+    }
+
+    public void setEventSpies( List<EventSpy> eventSpies )
+    {
+        this.eventSpies = eventSpies;
+    }
+
+    public Set<ExecutionEvent.Type> getExecutionEventInterest()
+    {
+        return executionEventInterest;
+    }
+
+    public void setExecutionEventInterest( Set<ExecutionEvent.Type> types )
+    {
+        this.executionEventInterest = types;
+    }
+
+    public Collection<String> getEventSpyInterest()
+    {
+        return eventSpyInterest;
+    }
+
+    public void setEventSpyInterest( Collection<String> eventClassNames )
+    {
+        this.eventSpyInterest = eventClassNames;
+    }
+
+    public ProjectResultListener getProjectResultListener()
+    {
+        return projectResultListener;
+    }
+
+    public void setProjectResultListener( ProjectResultListener listener )
+    {
+        this.projectResultListener = listener;
+    }
+
+    /**
+     * The profiler of the mojo executions of the current execution, or null.
+     */
+    public MojoProfiler getMojoProfiler()
+    {
+        return mojoProfiler;
+    }
+
+    public void setMojoProfiler( MojoProfiler profiler )
+    {
+        this.mojoProfiler = profiler;
+    }
+
+    /**
+     * Sets the result of the execution along with the {@link #getMojoProfiler() profile} of its
+     * mojo executions, and passes it on to the {@link #getProjectResultListener() listener for
+     * the results}, if any.
+     */
+    public void finish( HudsonMavenExecutionResult result )
+    {
+        MojoProfiler profiler = mojoProfiler;
+        if ( profiler != null )
+        {
+            result.setMojoProfile( profiler.getProfile() );
+        }
+        this.mavenExecutionResult = result;
+        ProjectResultListener listener = projectResultListener;
+        if ( listener != null )
+        {
+            listener.executionFinished( result );
+        }
+    }
+
+    public HudsonMavenExecutionResult getMavenExecutionResult()
+    {
+        return mavenExecutionResult;
+    }
+
+    public void setMavenExecutionResult( HudsonMavenExecutionResult result )
+    {
+        this.mavenExecutionResult = result;
+    }
+
+    public Map<String, Long> getStartupTimings()
+    {
+        return startupTimings;
+    }
+
+    public void setStartupTimings( Map<String, Long> startupTimings )
+    {
+        this.startupTimings = startupTimings;
+    }
+}
@@ -0,0 +1,219 @@
+package org.jvnet.hudson.maven3.launcher;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Scanner;
+import java.util.Set;
+
+import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.classworlds.realm.DuplicateRealmException;
+import org.codehaus.plexus.classworlds.realm.NoSuchRealmException;
+
+/**
+ * Keeps the merged Sisu index of the {@code plexus.core} realm on disk, so that a container
+ * created with {@code SCANNING_INDEX} doesn't have to open every jar of the Maven
+ * installation to look for {@code META-INF/sisu/javax.inject.Named}.
+ * <p>
+ * Sisu only looks for the index in the class path of the container realm itself, so the
+ * container is given a child realm of {@code plexus.core} whose only class path entry is the
+ * cached index. Classes and all the other resources, such as the {@code components.xml}
+ * descriptors, still come from {@code plexus.core}.
+ * <p>
+ * The cache is keyed by a digest of the path, size and modification time of the jars of the
+ * realm, which changes when the Maven installation does.
+ *
+ * @since 1.15
+ */
+public class SisuIndexCache
+{
+
+    /**
+     * Directory to keep the cached indexes in. Not set by default, which disables the cache.
+     */
+    public static final String CACHE_DIR_PROPERTY = "jenkins.maven3.launcher.indexCache";
+
+    static final String INDEX = "META-INF/sisu/javax.inject.Named";
+
+    private static final String REALM_SUFFIX = ".sisu-index";
+
+    private SisuIndexCache()
+    {
+    }
+
+    /**
+     * Returns the realm to create the container in, which is the given realm itself if the
+     * cache is disabled or can't be used.
+     */
+    public static ClassRealm containerRealm( ClassRealm realm )
+    {
+        String dir = System.getProperty( CACHE_DIR_PROPERTY );
+        if ( dir == null || dir.isEmpty() )
+        {
+            return realm;
+        }
+        try
+        {
+            File indexDir = new File( dir, keyOf( realm.getURLs() ) );
+            if ( !new File( indexDir, INDEX ).isFile() )
+            {
+                write( realm, indexDir );
+            }
+            return indexRealm( realm, indexDir.toURI().toURL() );
+        }
+        catch ( IOException | DuplicateRealmException e )
+        {
+            // scanning the jars as usual works just as well
+            return realm;
+        }
+    }
+
+    /**
+     * Is the given container realm the one created for the given realm?
+     */
+    public static boolean isContainerRealmOf( ClassRealm containerRealm, ClassRealm realm )
+    {
+        return containerRealm == realm
+            || ( containerRealm.getId().equals( realm.getId() + REALM_SUFFIX )
+                && containerRealm.getParentRealm() == realm );
+    }
+
+    private static ClassRealm indexRealm( ClassRealm realm, URL index )
+        throws DuplicateRealmException
+    {
+        String id = realm.getId() + REALM_SUFFIX;
+        try
+        {
+            ClassRealm existing = realm.getWorld().getRealm( id );
+            URL[] urls = existing.getURLs();
+            if ( existing.getParentRealm() == realm && urls.length == 1 && urls[0].equals( index ) )
+            {
+                return existing;
+            }
+            realm.getWorld().disposeRealm( id );
+        }
+        catch ( NoSuchRealmException e )
+        {
+            // not created yet
+        }
+        ClassRealm indexRealm = realm.createChildRealm( id );
+        indexRealm.addURL( index );
+        return indexRealm;
+    }
+
+    /**
+     * Merges the index files of the jars of the realm, leaving out the parent realms like
+     * Sisu does.
+     */
+    private static void write( ClassRealm realm, File indexDir )
+        throws IOException
+    {
+        Set<String> names = new LinkedHashSet<>();
+        Enumeration<URL> indexes = realm.findResources( INDEX );
+        while ( indexes.hasMoreElements() )
+        {
+            try ( InputStream in = indexes.nextElement().openStream();
+                  Scanner scanner = new Scanner( in, "UTF-8" ) )
+            {
+                while ( scanner.hasNextLine() )
+                {
+                    String line = scanner.nextLine().trim();
+                    if ( !line.isEmpty() && !line.startsWith( "#" ) )
+                    {
+                        names.add( line );
+                    }
+                }
+            }
+        }
+
+        Path target = new File( indexDir, INDEX ).toPath();
+        Files.createDirectories( target.getParent() );
+        // another agent may be writing the same index
+        Path tmp = Files.createTempFile( target.getParent(), "javax.inject.Named", ".tmp" );
+        try
+        {
+            try ( Writer w = Files.newBufferedWriter( tmp, StandardCharsets.UTF_8 ) )
+            {
+                for ( String name : names )
+                {
+                    w.write( name );
+                    w.write( '\n' );
+                }
+            }
+            Files.move( tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        finally
+        {
+            Files.deleteIfExists( tmp );
+        }
+    }
+
+    static String keyOf( URL[] urls )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IOException( e );
+        }
+        for ( URL url : urls )
+        {
+            digest.update( url.toExternalForm().getBytes( StandardCharsets.UTF_8 ) );
+            if ( "file".equals( url.getProtocol() ) )
+            {
+                File f;
+                try
+                {
+                    f = new File( url.toURI() );
+                }
+                catch ( URISyntaxException | IllegalArgumentException e )
+                {
+                    throw new IOException( "Unexpected class path entry " + url, e );
+                }
+                digest.update( Long.toString( f.length() ).getBytes( StandardCharsets.UTF_8 ) );
+                digest.update( Long.toString( f.lastModified() ).getBytes( StandardCharsets.UTF_8 ) );
+            }
+        }
+        StringBuilder key = new StringBuilder();
+        for ( byte b : digest.digest() )
+        {
+            key.append( String.format( "%02x", b ) );
+        }
+        return key.toString();
+    }
+}
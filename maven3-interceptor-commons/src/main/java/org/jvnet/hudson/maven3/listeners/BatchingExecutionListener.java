@@ -0,0 +1,339 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+
+/**
+ * Decorates the {@link ExecutionListener} supplied by Jenkins so that the frequent mojo and
+ * fork events are passed on in batches instead of one by one.
+ * <p>
+ * A batch is passed on when it is full, when the next event comes after the first of the
+ * batch is older than {@link #BATCH_DELAY_PROPERTY}, and before any other event, always on a
+ * thread Maven fires the events on. Session, project and failure events are never held back,
+ * so a project's events are all passed on by the time it ends. The {@code mojoStarted} and
+ * {@code mojoSucceeded} events are only held back if the delegate says it
+ * {@linkplain ExecutionEventBatchListener#batchesMojoEvents() can take them late}: the
+ * reporters of Jenkins change the configuration of the mojo before it runs, and may fail the
+ * build after it ran. If the delegate implements {@link ExecutionEventBatchListener} it gets
+ * the whole batch in one call, otherwise the events are replayed to it one by one.
+ * <p>
+ * Events are passed on outside the monitor the batch is built under, so that the threads of a
+ * parallel build don't wait for a remote call to hold an event. They are still passed on one
+ * call at a time, in the order they were held.
+ * <p>
+ * A held event is an {@link ExecutionEventSnapshot} of the one Maven fired.
+ *
+ * @since 1.15
+ */
+public class BatchingExecutionListener
+    implements ExecutionListener
+{
+
+    /**
+     * Set to batch the execution events.
+     */
+    public static final String BATCH_PROPERTY = "jenkins.maven3.listener.batch";
+
+    /**
+     * Maximum number of events in a batch, 64 by default.
+     */
+    public static final String BATCH_SIZE_PROPERTY = "jenkins.maven3.listener.batch.size";
+
+    /**
+     * Longest time in milliseconds an event is held back for while more events come, 1000 by
+     * default.
+     */
+    public static final String BATCH_DELAY_PROPERTY = "jenkins.maven3.listener.batch.delay";
+
+    private final ExecutionListener delegate;
+
+    private final int batchSize;
+
+    private final long maxDelay;
+
+    private final boolean holdMojoEvents;
+
+    /**
+     * Held while a batch is passed on, so that batches are passed on in order.
+     */
+    private final Object deliveryLock = new Object();
+
+    private List<ExecutionEvent> batch;
+
+    private long batchStarted;
+
+    public BatchingExecutionListener( ExecutionListener delegate, int batchSize, long maxDelayMillis )
+    {
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxDelay = TimeUnit.MILLISECONDS.toNanos( maxDelayMillis );
+        this.holdMojoEvents = delegate instanceof ExecutionEventBatchListener
+            && ( (ExecutionEventBatchListener) delegate ).batchesMojoEvents();
+    }
+
+    /**
+     * Decorates the given listener if {@link #BATCH_PROPERTY} is set.
+     */
+    public static ExecutionListener decorate( ExecutionListener listener )
+    {
+        if ( listener == null || !Boolean.getBoolean( BATCH_PROPERTY ) )
+        {
+            return listener;
+        }
+        return new BatchingExecutionListener( listener, Integer.getInteger( BATCH_SIZE_PROPERTY, 64 ),
+                                              Long.getLong( BATCH_DELAY_PROPERTY, 1000 ) );
+    }
+
+    public ExecutionListener getDelegate()
+    {
+        return delegate;
+    }
+
+    private void hold( ExecutionEvent event )
+    {
+        synchronized ( this )
+        {
+            long now = System.nanoTime();
+            if ( batch == null )
+            {
+                batch = new ArrayList<>( batchSize );
+                batchStarted = now;
+            }
+            batch.add( new ExecutionEventSnapshot( event ) );
+            if ( batch.size() < batchSize && now - batchStarted < maxDelay )
+            {
+                return;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Passes on the events held so far.
+     */
+    public void flush()
+    {
+        synchronized ( deliveryLock )
+        {
+            deliverBatch( take() );
+        }
+    }
+
+    private void pass( ExecutionEvent event )
+    {
+        synchronized ( deliveryLock )
+        {
+            deliverBatch( take() );
+            deliver( delegate, event );
+        }
+    }
+
+    private void passMojoEvent( ExecutionEvent event )
+    {
+        if ( holdMojoEvents )
+        {
+            hold( event );
+        }
+        else
+        {
+            pass( event );
+        }
+    }
+
+    private synchronized List<ExecutionEvent> take()
+    {
+        List<ExecutionEvent> events = batch;
+        batch = null;
+        return events;
+    }
+
+    private void deliverBatch( List<ExecutionEvent> events )
+    {
+        if ( events == null )
+        {
+            return;
+        }
+        if ( delegate instanceof ExecutionEventBatchListener )
+        {
+            ( (ExecutionEventBatchListener) delegate ).executionEvents( events );
+            return;
+        }
+        for ( ExecutionEvent event : events )
+        {
+            deliver( delegate, event );
+        }
+    }
+
+    /**
+     * Calls the method of the given listener for the type of the given event.
+     */
+    static void deliver( ExecutionListener delegate, ExecutionEvent event )
+    {
+        switch ( event.getType() )
+        {
+            case ProjectDiscoveryStarted:
+                delegate.projectDiscoveryStarted( event );
+                break;
+            case SessionStarted:
+                delegate.sessionStarted( event );
+                break;
+            case SessionEnded:
+                delegate.sessionEnded( event );
+                break;
+            case ProjectSkipped:
+                delegate.projectSkipped( event );
+                break;
+            case ProjectStarted:
+                delegate.projectStarted( event );
+                break;
+            case ProjectSucceeded:
+                delegate.projectSucceeded( event );
+                break;
+            case ProjectFailed:
+                delegate.projectFailed( event );
+                break;
+            case MojoSkipped:
+                delegate.mojoSkipped( event );
+                break;
+            case MojoStarted:
+                delegate.mojoStarted( event );
+                break;
+            case MojoSucceeded:
+                delegate.mojoSucceeded( event );
+                break;
+            case MojoFailed:
+                delegate.mojoFailed( event );
+                break;
+            case ForkStarted:
+                delegate.forkStarted( event );
+                break;
+            case ForkSucceeded:
+                delegate.forkSucceeded( event );
+                break;
+            case ForkFailed:
+                delegate.forkFailed( event );
+                break;
+            case ForkedProjectStarted:
+                delegate.forkedProjectStarted( event );
+                break;
+            case ForkedProjectSucceeded:
+                delegate.forkedProjectSucceeded( event );
+                break;
+            case ForkedProjectFailed:
+                delegate.forkedProjectFailed( event );
+                break;
+            default:
+                // a type added by a later Maven version, which this listener doesn't know of
+                break;
+        }
+    }
+
+    public void projectDiscoveryStarted( ExecutionEvent event )
+    {
+        pass( event );
+    }
+
+    public void sessionStarted( ExecutionEvent event )
+    {
+        pass( event );
+    }
+
+    public void sessionEnded( ExecutionEvent event )
+    {
+        pass( event );
+    }
+
+    public void projectSkipped( ExecutionEvent event )
+    {
+        pass( event );
+    }
+
+    public void projectStarted( ExecutionEvent event )
+    {
+        pass( event );
+    }
+
+    public void projectSucceeded( ExecutionEvent event )
+    {
+        pass( event );
+    }
+
+    public void projectFailed( ExecutionEvent event )
+    {
+        pass( event );
+    }
+
+    public void forkStarted( ExecutionEvent event )
+    {
+        hold( event );
+    }
+
+    public void forkSucceeded( ExecutionEvent event )
+    {
+        hold( event );
+    }
+
+    public void forkFailed( ExecutionEvent event )
+    {
+        pass( event );
+    }
+
+    public void mojoSkipped( ExecutionEvent event )
+    {
+        hold( event );
+    }
+
+    public void mojoStarted( ExecutionEvent event )
+    {
+        passMojoEvent( event );
+    }
+
+    public void mojoSucceeded( ExecutionEvent event )
+    {
+        passMojoEvent( event );
+    }
+
+    public void mojoFailed( ExecutionEvent event )
+    {
+        pass( event );
+    }
+
+    public void forkedProjectStarted( ExecutionEvent event )
+    {
+        hold( event );
+    }
+
+    public void forkedProjectSucceeded( ExecutionEvent event )
+    {
+        hold( event );
+    }
+
+    public void forkedProjectFailed( ExecutionEvent event )
+    {
+        pass( event );
+    }
+}
@@ -0,0 +1,49 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+import org.apache.maven.execution.ExecutionEvent;
+
+/**
+ * Implemented by an {@link org.apache.maven.execution.ExecutionListener} that can take several
+ * events in one call, typically to send them to the master in one remote call.
+ *
+ * @see BatchingExecutionListener
+ * @since 1.15
+ */
+public interface ExecutionEventBatchListener
+{
+
+    /**
+     * Receives events in the order Maven fired them.
+     */
+    void executionEvents( List<ExecutionEvent> events );
+
+    /**
+     * Whether the {@code mojoStarted} and {@code mojoSucceeded} events may be held back and
+     * passed on in a batch too, once the mojo ran. Not if the listener changes the
+     * configuration of the mojo before it runs or fails the build after it ran, as the
+     * reporters of Jenkins do.
+     */
+    boolean batchesMojoEvents();
+}
@@ -0,0 +1,130 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.eventspy.EventSpy;
+
+/**
+ * Only passes on the events that are an instance of one of the classes the master declared
+ * an interest in. The classes are given by name, as the master doesn't necessarily see the
+ * same classes as the Maven realm. Whether a class of events is wanted is only worked out
+ * once.
+ *
+ * @since 1.15
+ */
+public class FilteringEventSpy
+    implements EventSpy
+{
+
+    private final EventSpy delegate;
+
+    private final Set<String> classNames;
+
+    private final ConcurrentMap<Class<?>, Boolean> wanted = new ConcurrentHashMap<>();
+
+    public FilteringEventSpy( EventSpy delegate, Collection<String> classNames )
+    {
+        this.delegate = delegate;
+        this.classNames = new HashSet<>( classNames );
+    }
+
+    /**
+     * Decorates each of the given spies unless all events are wanted, which is what a null
+     * collection means.
+     */
+    public static List<EventSpy> decorate( List<EventSpy> spies, Collection<String> classNames )
+    {
+        if ( spies == null || classNames == null )
+        {
+            return spies;
+        }
+        List<EventSpy> filtered = new ArrayList<>( spies.size() );
+        for ( EventSpy spy : spies )
+        {
+            filtered.add( new FilteringEventSpy( spy, classNames ) );
+        }
+        return filtered;
+    }
+
+    public EventSpy getDelegate()
+    {
+        return delegate;
+    }
+
+    public void init( Context context )
+        throws Exception
+    {
+        delegate.init( context );
+    }
+
+    public void onEvent( Object event )
+        throws Exception
+    {
+        if ( event != null && isWanted( event.getClass() ) )
+        {
+            delegate.onEvent( event );
+        }
+    }
+
+    public void close()
+        throws Exception
+    {
+        delegate.close();
+    }
+
+    private boolean isWanted( Class<?> type )
+    {
+        Boolean result = wanted.get( type );
+        if ( result == null )
+        {
+            result = matches( type );
+            wanted.put( type, result );
+        }
+        return result;
+    }
+
+    private boolean matches( Class<?> type )
+    {
+        for ( Class<?> c = type; c != null; c = c.getSuperclass() )
+        {
+            if ( classNames.contains( c.getName() ) )
+            {
+                return true;
+            }
+            for ( Class<?> i : c.getInterfaces() )
+            {
+                if ( matches( i ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,239 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+
+/**
+ * Only passes on the types of execution events the master declared an interest in, so the
+ * others cost no more than a set lookup.
+ * <p>
+ * It goes inside {@link BatchingExecutionListener}, so that the batcher still sees the
+ * project events it passes its batches on before, whatever the master wants. The batches it
+ * passes on are filtered as well.
+ *
+ * @since 1.15
+ */
+public class FilteringExecutionListener
+    implements ExecutionListener, ExecutionEventBatchListener
+{
+
+    private final ExecutionListener delegate;
+
+    private final Set<ExecutionEvent.Type> types;
+
+    public FilteringExecutionListener( ExecutionListener delegate, Set<ExecutionEvent.Type> types )
+    {
+        this.delegate = delegate;
+        this.types = types.isEmpty() ? EnumSet.noneOf( ExecutionEvent.Type.class ) : EnumSet.copyOf( types );
+    }
+
+    /**
+     * Decorates the given listener unless all types of events are wanted, which is what a
+     * null set means.
+     */
+    public static ExecutionListener decorate( ExecutionListener listener, Set<ExecutionEvent.Type> types )
+    {
+        if ( listener == null || types == null )
+        {
+            return listener;
+        }
+        return new FilteringExecutionListener( listener, types );
+    }
+
+    public ExecutionListener getDelegate()
+    {
+        return delegate;
+    }
+
+    public void executionEvents( List<ExecutionEvent> events )
+    {
+        List<ExecutionEvent> wanted = new ArrayList<>( events.size() );
+        for ( ExecutionEvent event : events )
+        {
+            if ( types.contains( event.getType() ) )
+            {
+                wanted.add( event );
+            }
+        }
+        if ( wanted.isEmpty() )
+        {
+            return;
+        }
+        if ( delegate instanceof ExecutionEventBatchListener )
+        {
+            ( (ExecutionEventBatchListener) delegate ).executionEvents( wanted );
+            return;
+        }
+        for ( ExecutionEvent event : wanted )
+        {
+            BatchingExecutionListener.deliver( delegate, event );
+        }
+    }
+
+    public boolean batchesMojoEvents()
+    {
+        return delegate instanceof ExecutionEventBatchListener
+            && ( (ExecutionEventBatchListener) delegate ).batchesMojoEvents();
+    }
+
+    public void projectDiscoveryStarted( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ProjectDiscoveryStarted ) )
+        {
+            delegate.projectDiscoveryStarted( event );
+        }
+    }
+
+    public void sessionStarted( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.SessionStarted ) )
+        {
+            delegate.sessionStarted( event );
+        }
+    }
+
+    public void sessionEnded( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.SessionEnded ) )
+        {
+            delegate.sessionEnded( event );
+        }
+    }
+
+    public void projectSkipped( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ProjectSkipped ) )
+        {
+            delegate.projectSkipped( event );
+        }
+    }
+
+    public void projectStarted( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ProjectStarted ) )
+        {
+            delegate.projectStarted( event );
+        }
+    }
+
+    public void projectSucceeded( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ProjectSucceeded ) )
+        {
+            delegate.projectSucceeded( event );
+        }
+    }
+
+    public void projectFailed( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ProjectFailed ) )
+        {
+            delegate.projectFailed( event );
+        }
+    }
+
+    public void forkStarted( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ForkStarted ) )
+        {
+            delegate.forkStarted( event );
+        }
+    }
+
+    public void forkSucceeded( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ForkSucceeded ) )
+        {
+            delegate.forkSucceeded( event );
+        }
+    }
+
+    public void forkFailed( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ForkFailed ) )
+        {
+            delegate.forkFailed( event );
+        }
+    }
+
+    public void mojoSkipped( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.MojoSkipped ) )
+        {
+            delegate.mojoSkipped( event );
+        }
+    }
+
+    public void mojoStarted( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.MojoStarted ) )
+        {
+            delegate.mojoStarted( event );
+        }
+    }
+
+    public void mojoSucceeded( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.MojoSucceeded ) )
+        {
+            delegate.mojoSucceeded( event );
+        }
+    }
+
+    public void mojoFailed( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.MojoFailed ) )
+        {
+            delegate.mojoFailed( event );
+        }
+    }
+
+    public void forkedProjectStarted( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ForkedProjectStarted ) )
+        {
+            delegate.forkedProjectStarted( event );
+        }
+    }
+
+    public void forkedProjectSucceeded( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ForkedProjectSucceeded ) )
+        {
+            delegate.forkedProjectSucceeded( event );
+        }
+    }
+
+    public void forkedProjectFailed( ExecutionEvent event )
+    {
+        if ( types.contains( ExecutionEvent.Type.ForkedProjectFailed ) )
+        {
+            delegate.forkedProjectFailed( event );
+        }
+    }
+}
@@ -36,6 +36,8 @@ public class HudsonMavenExecutionResult implements Serializable
     List<Throwable> throwables = new ArrayList<>();
     
     List<MavenProjectInfo> mavenProjectInfos = new ArrayList<>();
+
+    MojoProfile mojoProfile;
     
     public HudsonMavenExecutionResult(MavenExecutionResult mavenExecutionResult)
     {
@@ -81,4 +83,21 @@ public class HudsonMavenExecutionResult implements Serializable
     {
         this.mavenProjectInfos = mavenProjectInfos;
     }
+
+    /**
+     * Where the time of the build went per mojo execution, null unless the mojo executions
+     * were profiled.
+     *
+     * @see MojoProfiler
+     * @since 1.15
+     */
+    public MojoProfile getMojoProfile()
+    {
+        return mojoProfile;
+    }
+
+    public void setMojoProfile( MojoProfile mojoProfile )
+    {
+        this.mojoProfile = mojoProfile;
+    }
 }
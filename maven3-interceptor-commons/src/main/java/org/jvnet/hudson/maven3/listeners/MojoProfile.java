@@ -0,0 +1,117 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+
+/**
+ * Where the time of a build went, per project and mojo execution, as recorded by
+ * {@link MojoProfiler}. Each row holds the totals of one mojo execution of one project. Times
+ * are in nanoseconds. The CPU time and the allocated bytes are -1 when the JVM can't measure
+ * them.
+ *
+ * @since 1.15
+ */
+public class MojoProfile
+    implements Serializable
+{
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] projects;
+
+    private final String[] mojos;
+
+    private final long[] counts;
+
+    private final long[] wallTimes;
+
+    private final long[] cpuTimes;
+
+    private final long[] allocatedBytes;
+
+    public MojoProfile( String[] projects, String[] mojos, long[] counts, long[] wallTimes, long[] cpuTimes,
+                        long[] allocatedBytes )
+    {
+        this.projects = projects;
+        this.mojos = mojos;
+        this.counts = counts;
+        this.wallTimes = wallTimes;
+        this.cpuTimes = cpuTimes;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public int size()
+    {
+        return projects.length;
+    }
+
+    /**
+     * The {@code groupId:artifactId} of the project of the given row.
+     */
+    public String getProject( int row )
+    {
+        return projects[row];
+    }
+
+    /**
+     * The {@code groupId:artifactId:version:goal (executionId)} of the mojo execution of the
+     * given row.
+     */
+    public String getMojo( int row )
+    {
+        return mojos[row];
+    }
+
+    public long getCount( int row )
+    {
+        return counts[row];
+    }
+
+    public long getWallTime( int row )
+    {
+        return wallTimes[row];
+    }
+
+    public long getCpuTime( int row )
+    {
+        return cpuTimes[row];
+    }
+
+    public long getAllocatedBytes( int row )
+    {
+        return allocatedBytes[row];
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder buf = new StringBuilder( "project\tmojo\tcount\twall ms\tcpu ms\tallocated MB\n" );
+        for ( int i = 0; i < size(); i++ )
+        {
+            buf.append( projects[i] ).append( '\t' ).append( mojos[i] ).append( '\t' ).append( counts[i] )
+                .append( '\t' ).append( wallTimes[i] / 1000000 )
+                .append( '\t' ).append( cpuTimes[i] < 0 ? -1 : cpuTimes[i] / 1000000 )
+                .append( '\t' ).append( allocatedBytes[i] < 0 ? -1 : allocatedBytes[i] >> 20 ).append( '\n' );
+        }
+        return buf.toString();
+    }
+}
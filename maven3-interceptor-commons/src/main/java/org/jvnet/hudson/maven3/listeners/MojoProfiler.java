@@ -0,0 +1,340 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Measures the wall time, the CPU time and the allocations of the thread of each mojo
+ * execution, and passes all the events on to the listener it decorates. The time spent in
+ * that listener isn't counted.
+ * <p>
+ * The measurements are summed up per project and mojo execution in primitive arrays, and
+ * handed out as a {@link MojoProfile}.
+ *
+ * @since 1.15
+ */
+public class MojoProfiler
+    implements ExecutionListener
+{
+
+    /**
+     * Set to profile the mojo executions.
+     */
+    public static final String PROFILE_PROPERTY = "jenkins.maven3.listener.profile";
+
+    private static final int COUNT = 0, WALL = 1, CPU = 2, ALLOCATED = 3, COLUMNS = 4;
+
+    private final ExecutionListener delegate;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final boolean cpuTime;
+
+    private final boolean allocations;
+
+    /**
+     * What each thread measured when its current mojo started.
+     */
+    private final ThreadLocal<Deque<long[]>> started = new ThreadLocal<Deque<long[]>>()
+    {
+        @Override
+        protected Deque<long[]> initialValue()
+        {
+            return new ArrayDeque<>();
+        }
+    };
+
+    private final Map<String, Integer> rows = new HashMap<>();
+
+    private String[] projects = new String[64];
+
+    private String[] mojos = new String[64];
+
+    /**
+     * {@link #COLUMNS} values per row.
+     */
+    private long[] values = new long[64 * COLUMNS];
+
+    public MojoProfiler( ExecutionListener delegate )
+    {
+        this.delegate = delegate;
+        this.cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+        this.allocations = isAllocatedMemoryEnabled( threads );
+    }
+
+    /**
+     * Returns a profiler decorating the given listener if {@link #PROFILE_PROPERTY} is set,
+     * otherwise null.
+     */
+    public static MojoProfiler createIfEnabled( ExecutionListener listener )
+    {
+        return Boolean.getBoolean( PROFILE_PROPERTY ) ? new MojoProfiler( listener ) : null;
+    }
+
+    private static boolean isAllocatedMemoryEnabled( ThreadMXBean threads )
+    {
+        try
+        {
+            return threads instanceof com.sun.management.ThreadMXBean
+                && ( (com.sun.management.ThreadMXBean) threads ).isThreadAllocatedMemorySupported()
+                && ( (com.sun.management.ThreadMXBean) threads ).isThreadAllocatedMemoryEnabled();
+        }
+        catch ( LinkageError e )
+        {
+            // not a HotSpot JVM
+            return false;
+        }
+    }
+
+    public ExecutionListener getDelegate()
+    {
+        return delegate;
+    }
+
+    private long[] measure()
+    {
+        long[] m = new long[COLUMNS];
+        m[WALL] = System.nanoTime();
+        m[CPU] = cpuTime ? threads.getCurrentThreadCpuTime() : -1;
+        m[ALLOCATED] = allocations
+            ? ( (com.sun.management.ThreadMXBean) threads ).getThreadAllocatedBytes( Thread.currentThread().getId() )
+            : -1;
+        return m;
+    }
+
+    private void start()
+    {
+        started.get().push( measure() );
+    }
+
+    private void end( ExecutionEvent event )
+    {
+        long[] start = started.get().poll();
+        if ( start == null )
+        {
+            return;
+        }
+        long[] end = measure();
+        MavenProject project = event.getProject();
+        MojoExecution mojo = event.getMojoExecution();
+        String projectKey = project == null ? "" : project.getGroupId() + ':' + project.getArtifactId();
+        String mojoKey = mojo == null ? "" : mojo.getGroupId() + ':' + mojo.getArtifactId() + ':' + mojo.getVersion()
+            + ':' + mojo.getGoal() + " (" + mojo.getExecutionId() + ')';
+        add( projectKey, mojoKey, end[WALL] - start[WALL], cpuTime ? end[CPU] - start[CPU] : -1,
+             allocations ? end[ALLOCATED] - start[ALLOCATED] : -1 );
+    }
+
+    private synchronized void add( String project, String mojo, long wall, long cpu, long allocated )
+    {
+        String key = project + ' ' + mojo;
+        Integer row = rows.get( key );
+        if ( row == null )
+        {
+            row = rows.size();
+            if ( row == projects.length )
+            {
+                projects = Arrays.copyOf( projects, row * 2 );
+                mojos = Arrays.copyOf( mojos, row * 2 );
+                values = Arrays.copyOf( values, row * 2 * COLUMNS );
+            }
+            projects[row] = project;
+            mojos[row] = mojo;
+            rows.put( key, row );
+        }
+        int base = row * COLUMNS;
+        values[base + COUNT]++;
+        values[base + WALL] += wall;
+        values[base + CPU] = cpu < 0 ? -1 : values[base + CPU] + cpu;
+        values[base + ALLOCATED] = allocated < 0 ? -1 : values[base + ALLOCATED] + allocated;
+    }
+
+    /**
+     * The totals so far, in the order the mojo executions first ended.
+     */
+    public synchronized MojoProfile getProfile()
+    {
+        int size = rows.size();
+        long[] counts = new long[size];
+        long[] wallTimes = new long[size];
+        long[] cpuTimes = new long[size];
+        long[] allocatedBytes = new long[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            counts[i] = values[i * COLUMNS + COUNT];
+            wallTimes[i] = values[i * COLUMNS + WALL];
+            cpuTimes[i] = values[i * COLUMNS + CPU];
+            allocatedBytes[i] = values[i * COLUMNS + ALLOCATED];
+        }
+        return new MojoProfile( Arrays.copyOf( projects, size ), Arrays.copyOf( mojos, size ), counts, wallTimes,
+                                cpuTimes, allocatedBytes );
+    }
+
+    public void projectDiscoveryStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectDiscoveryStarted( event );
+        }
+    }
+
+    public void sessionStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.sessionStarted( event );
+        }
+    }
+
+    public void sessionEnded( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.sessionEnded( event );
+        }
+    }
+
+    public void projectSkipped( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectSkipped( event );
+        }
+    }
+
+    public void projectStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectStarted( event );
+        }
+    }
+
+    public void projectSucceeded( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectSucceeded( event );
+        }
+    }
+
+    public void projectFailed( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectFailed( event );
+        }
+    }
+
+    public void forkStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkStarted( event );
+        }
+    }
+
+    public void forkSucceeded( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkSucceeded( event );
+        }
+    }
+
+    public void forkFailed( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkFailed( event );
+        }
+    }
+
+    public void mojoSkipped( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.mojoSkipped( event );
+        }
+    }
+
+    public void mojoStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.mojoStarted( event );
+        }
+        start();
+    }
+
+    public void mojoSucceeded( ExecutionEvent event )
+    {
+        end( event );
+        if ( delegate != null )
+        {
+            delegate.mojoSucceeded( event );
+        }
+    }
+
+    public void mojoFailed( ExecutionEvent event )
+    {
+        end( event );
+        if ( delegate != null )
+        {
+            delegate.mojoFailed( event );
+        }
+    }
+
+    public void forkedProjectStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkedProjectStarted( event );
+        }
+    }
+
+    public void forkedProjectSucceeded( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkedProjectSucceeded( event );
+        }
+    }
+
+    public void forkedProjectFailed( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkedProjectFailed( event );
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Serializable;
+
+/**
+ * The outcome of one project of the reactor, published as soon as the project is done.
+ *
+ * @see ProjectResultListener
+ * @since 1.15
+ */
+public class ProjectResult
+    implements Serializable
+{
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Outcome
+    {
+        SUCCESS, FAILURE, SKIPPED
+    }
+
+    private MavenProjectInfo mavenProjectInfo;
+
+    private Outcome outcome;
+
+    private Throwable failure;
+
+    public ProjectResult()
+    {
+        // no op
+    }
+
+    public ProjectResult( MavenProjectInfo mavenProjectInfo, Outcome outcome, Throwable failure )
+    {
+        this.mavenProjectInfo = mavenProjectInfo;
+        this.outcome = outcome;
+        this.failure = failure;
+    }
+
+    public MavenProjectInfo getMavenProjectInfo()
+    {
+        return mavenProjectInfo;
+    }
+
+    public void setMavenProjectInfo( MavenProjectInfo mavenProjectInfo )
+    {
+        this.mavenProjectInfo = mavenProjectInfo;
+    }
+
+    public Outcome getOutcome()
+    {
+        return outcome;
+    }
+
+    public void setOutcome( Outcome outcome )
+    {
+        this.outcome = outcome;
+    }
+
+    /**
+     * Why the project failed, null unless the {@link #getOutcome() outcome} is
+     * {@link Outcome#FAILURE}.
+     */
+    public Throwable getFailure()
+    {
+        return failure;
+    }
+
+    public void setFailure( Throwable failure )
+    {
+        this.failure = failure;
+    }
+
+    @Override
+    public String toString()
+    {
+        return mavenProjectInfo + " " + outcome;
+    }
+}
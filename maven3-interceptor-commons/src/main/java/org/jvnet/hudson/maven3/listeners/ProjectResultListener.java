@@ -0,0 +1,42 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Receives the result of each project of the reactor while the build goes on, and the result
+ * of the whole execution at the end.
+ *
+ * @see ProjectResultPublisher
+ * @since 1.15
+ */
+public interface ProjectResultListener
+{
+
+    /**
+     * Called once per project, when it succeeded, failed or was skipped.
+     */
+    void projectFinished( ProjectResult result );
+
+    /**
+     * Called once at the end, after all the projects.
+     */
+    void executionFinished( HudsonMavenExecutionResult result );
+}
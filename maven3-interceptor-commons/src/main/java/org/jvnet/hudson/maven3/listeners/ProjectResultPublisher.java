@@ -0,0 +1,232 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.execution.BuildFailure;
+import org.apache.maven.execution.BuildSummary;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Passes all execution events on to the listener it decorates, and publishes the result of
+ * each project to a {@link ProjectResultListener} as soon as the project is done, instead of
+ * leaving it to the {@link HudsonMavenExecutionResult} at the end of the build.
+ *
+ * @since 1.15
+ */
+public class ProjectResultPublisher
+    implements ExecutionListener
+{
+
+    private final ExecutionListener delegate;
+
+    private final ProjectResultListener results;
+
+    public ProjectResultPublisher( ExecutionListener delegate, ProjectResultListener results )
+    {
+        this.delegate = delegate;
+        this.results = results;
+    }
+
+    /**
+     * Decorates the given listener, which may be null, if there is a listener for the results.
+     */
+    public static ExecutionListener decorate( ExecutionListener listener, ProjectResultListener results )
+    {
+        if ( results == null )
+        {
+            return listener;
+        }
+        return new ProjectResultPublisher( listener, results );
+    }
+
+    public ExecutionListener getDelegate()
+    {
+        return delegate;
+    }
+
+    private void publish( ExecutionEvent event, ProjectResult.Outcome outcome )
+    {
+        MavenProject project = event.getProject();
+        if ( project == null )
+        {
+            return;
+        }
+        MavenProjectInfo info = new MavenProjectInfo( project );
+        Throwable failure = null;
+        // Maven records the summary before it fires the event
+        BuildSummary summary = event.getSession() != null && event.getSession().getResult() != null
+            ? event.getSession().getResult().getBuildSummary( project ) : null;
+        if ( summary != null )
+        {
+            info.setBuildTime( summary.getTime() );
+            if ( summary instanceof BuildFailure )
+            {
+                failure = ( (BuildFailure) summary ).getCause();
+            }
+        }
+        if ( failure == null && outcome == ProjectResult.Outcome.FAILURE )
+        {
+            failure = event.getException();
+        }
+        results.projectFinished( new ProjectResult( info, outcome, failure ) );
+    }
+
+    public void projectDiscoveryStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectDiscoveryStarted( event );
+        }
+    }
+
+    public void sessionStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.sessionStarted( event );
+        }
+    }
+
+    public void sessionEnded( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.sessionEnded( event );
+        }
+    }
+
+    public void projectSkipped( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectSkipped( event );
+        }
+        publish( event, ProjectResult.Outcome.SKIPPED );
+    }
+
+    public void projectStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectStarted( event );
+        }
+    }
+
+    public void projectSucceeded( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectSucceeded( event );
+        }
+        publish( event, ProjectResult.Outcome.SUCCESS );
+    }
+
+    public void projectFailed( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.projectFailed( event );
+        }
+        publish( event, ProjectResult.Outcome.FAILURE );
+    }
+
+    public void forkStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkStarted( event );
+        }
+    }
+
+    public void forkSucceeded( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkSucceeded( event );
+        }
+    }
+
+    public void forkFailed( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkFailed( event );
+        }
+    }
+
+    public void mojoSkipped( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.mojoSkipped( event );
+        }
+    }
+
+    public void mojoStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.mojoStarted( event );
+        }
+    }
+
+    public void mojoSucceeded( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.mojoSucceeded( event );
+        }
+    }
+
+    public void mojoFailed( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.mojoFailed( event );
+        }
+    }
+
+    public void forkedProjectStarted( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkedProjectStarted( event );
+        }
+    }
+
+    public void forkedProjectSucceeded( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkedProjectSucceeded( event );
+        }
+    }
+
+    public void forkedProjectFailed( ExecutionEvent event )
+    {
+        if ( delegate != null )
+        {
+            delegate.forkedProjectFailed( event );
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.jvnet.hudson.maven3.launcher;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class LauncherContextTest
+{
+
+    @Test
+    public void closeGoesBackToTheDefaultContext()
+    {
+        LauncherContext defaultContext = LauncherContext.current();
+        LauncherContext context = LauncherContext.open();
+
+        assertNotSame( defaultContext, context );
+        assertSame( context, LauncherContext.current() );
+
+        context.close();
+
+        assertSame( defaultContext, LauncherContext.current() );
+    }
+
+    @Test
+    public void closeGoesBackToTheContextOpenedBefore()
+    {
+        LauncherContext outer = LauncherContext.open();
+        try
+        {
+            LauncherContext inner = LauncherContext.open();
+            assertSame( inner, LauncherContext.current() );
+
+            inner.close();
+
+            assertSame( outer, LauncherContext.current() );
+        }
+        finally
+        {
+            outer.close();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.jvnet.hudson.maven3.listeners;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.maven.execution.AbstractExecutionListener;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionEvent.Type;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+public class BatchingExecutionListenerTest
+{
+
+    private final List<String> received = new ArrayList<>();
+
+    @Test
+    public void keepsTheOrderOfTheEvents()
+    {
+        ExecutionListener listener = new BatchingExecutionListener( new Recorder(), 64, 60000 );
+        fire( listener, Type.SessionStarted, Type.ProjectStarted, Type.MojoSkipped, Type.ForkStarted,
+              Type.MojoStarted, Type.ForkSucceeded, Type.MojoSucceeded, Type.ForkedProjectStarted,
+              Type.ProjectSucceeded, Type.SessionEnded );
+
+        assertEquals( Arrays.asList( "SessionStarted", "ProjectStarted", "MojoSkipped", "ForkStarted", "MojoStarted",
+                                     "ForkSucceeded", "MojoSucceeded", "ForkedProjectStarted", "ProjectSucceeded",
+                                     "SessionEnded" ), received );
+    }
+
+    @Test
+    public void passesMojoEventsOnAtOnceToTheReportersOfJenkins()
+    {
+        ExecutionListener listener = new BatchingExecutionListener( new BatchRecorder( false ), 64, 60000 );
+        fire( listener, Type.ProjectStarted, Type.MojoSkipped, Type.MojoStarted );
+
+        assertEquals( Arrays.asList( "ProjectStarted", "[MojoSkipped]", "MojoStarted" ), received );
+    }
+
+    @Test
+    public void passesTheBatchOnWhenTheProjectEnds()
+    {
+        ExecutionListener listener = new BatchingExecutionListener( new BatchRecorder( true ), 64, 60000 );
+        fire( listener, Type.ProjectStarted, Type.MojoStarted, Type.MojoSucceeded, Type.MojoStarted,
+              Type.MojoSucceeded );
+
+        assertEquals( Arrays.asList( "ProjectStarted" ), received );
+
+        fire( listener, Type.ProjectSucceeded );
+
+        assertEquals( Arrays.asList( "ProjectStarted", "[MojoStarted, MojoSucceeded, MojoStarted, MojoSucceeded]",
+                                     "ProjectSucceeded" ), received );
+    }
+
+    @Test
+    public void passesTheBatchOnWhenAMojoFails()
+    {
+        ExecutionListener listener = new BatchingExecutionListener( new BatchRecorder( true ), 64, 60000 );
+        fire( listener, Type.MojoStarted, Type.MojoFailed );
+
+        assertEquals( Arrays.asList( "[MojoStarted]", "MojoFailed" ), received );
+    }
+
+    @Test
+    public void passesAFullBatchOn()
+    {
+        ExecutionListener listener = new BatchingExecutionListener( new BatchRecorder( true ), 2, 60000 );
+        fire( listener, Type.MojoStarted, Type.MojoSucceeded, Type.MojoStarted );
+
+        assertEquals( Arrays.asList( "[MojoStarted, MojoSucceeded]" ), received );
+    }
+
+    @Test
+    public void passesAnOldBatchOn()
+    {
+        ExecutionListener listener = new BatchingExecutionListener( new BatchRecorder( true ), 64, 0 );
+        fire( listener, Type.MojoStarted, Type.MojoSucceeded );
+
+        assertEquals( Arrays.asList( "[MojoStarted]", "[MojoSucceeded]" ), received );
+    }
+
+    @Test
+    public void holdsWhatTheEventReturnedWhenItWasFired()
+    {
+        final List<ExecutionEvent> batch = new ArrayList<>();
+        BatchRecorder recorder = new BatchRecorder( true )
+        {
+            @Override
+            public void executionEvents( List<ExecutionEvent> events )
+            {
+                batch.addAll( events );
+            }
+        };
+        ExecutionListener listener = new BatchingExecutionListener( recorder, 64, 60000 );
+        MavenProject project = new MavenProject();
+        Event event = new Event( Type.MojoStarted, project );
+        listener.mojoStarted( event );
+        event.project = new MavenProject();
+        listener.projectSucceeded( event );
+
+        assertEquals( 1, batch.size() );
+        assertSame( project, batch.get( 0 ).getProject() );
+    }
+
+    private static void fire( ExecutionListener listener, Type... types )
+    {
+        for ( Type type : types )
+        {
+            BatchingExecutionListener.deliver( listener, new Event( type, null ) );
+        }
+    }
+
+    private static final class Event
+        implements ExecutionEvent
+    {
+
+        private final Type type;
+
+        MavenProject project;
+
+        Event( Type type, MavenProject project )
+        {
+            this.type = type;
+            this.project = project;
+        }
+
+        public Type getType()
+        {
+            return type;
+        }
+
+        public MavenSession getSession()
+        {
+            return null;
+        }
+
+        public MavenProject getProject()
+        {
+            return project;
+        }
+
+        public MojoExecution getMojoExecution()
+        {
+            return null;
+        }
+
+        public Exception getException()
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Records the type of every event it gets.
+     */
+    private class Recorder
+        extends AbstractExecutionListener
+    {
+
+        private void record( ExecutionEvent event )
+        {
+            received.add( event.getType().name() );
+        }
+
+        @Override
+        public void projectDiscoveryStarted( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void sessionStarted( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void sessionEnded( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void projectSkipped( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void projectStarted( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void projectSucceeded( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void projectFailed( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void mojoSkipped( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void mojoStarted( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void mojoSucceeded( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void mojoFailed( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void forkStarted( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void forkSucceeded( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void forkFailed( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void forkedProjectStarted( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void forkedProjectSucceeded( ExecutionEvent event )
+        {
+            record( event );
+        }
+
+        @Override
+        public void forkedProjectFailed( ExecutionEvent event )
+        {
+            record( event );
+        }
+    }
+
+    /**
+     * Also records the types of the events of every batch it gets, between brackets.
+     */
+    private class BatchRecorder
+        extends Recorder
+        implements ExecutionEventBatchListener
+    {
+
+        private final boolean batchesMojoEvents;
+
+        BatchRecorder( boolean batchesMojoEvents )
+        {
+            this.batchesMojoEvents = batchesMojoEvents;
+        }
+
+        public void executionEvents( List<ExecutionEvent> events )
+        {
+            List<Type> types = new ArrayList<>();
+            for ( ExecutionEvent event : events )
+            {
+                types.add( event.getType() );
+            }
+            received.add( types.toString() );
+        }
+
+        public boolean batchesMojoEvents()
+        {
+            return batchesMojoEvents;
+        }
+    }
+}
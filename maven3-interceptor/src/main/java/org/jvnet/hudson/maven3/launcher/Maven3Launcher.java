@@ -20,10 +20,13 @@ package org.jvnet.hudson.maven3.launcher;
  * under the License.
  */
 
+import java.util.Set;
+
 import org.apache.maven.Maven;
 import org.apache.maven.cli.MavenExecutionRequestBuilder;
 import org.apache.maven.cli.MavenLoggerManager;
 import org.apache.maven.cli.PrintStreamLogger;
+import org.apache.maven.execution.ExecutionEvent;
 import org.apache.maven.execution.ExecutionListener;
 import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionResult;
@@ -32,7 +35,12 @@ import org.codehaus.plexus.DefaultContainerConfiguration;
 import org.codehaus.plexus.DefaultPlexusContainer;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.jvnet.hudson.maven3.listeners.BatchingExecutionListener;
+import org.jvnet.hudson.maven3.listeners.FilteringExecutionListener;
 import org.jvnet.hudson.maven3.listeners.HudsonMavenExecutionResult;
+import org.jvnet.hudson.maven3.listeners.MojoProfiler;
+import org.jvnet.hudson.maven3.listeners.ProjectResultListener;
+import org.jvnet.hudson.maven3.listeners.ProjectResultPublisher;
 
 /**
  * @author Olivier Lamy
@@ -40,24 +48,44 @@ import org.jvnet.hudson.maven3.listeners.HudsonMavenExecutionResult;
  */
 public class Maven3Launcher {
 
-    private static HudsonMavenExecutionResult hudsonMavenExecutionResult;
-
-    private static ExecutionListener mavenExecutionListener;
-
     public static ExecutionListener getMavenExecutionListener() {
-        return mavenExecutionListener;
+        return LauncherContext.current().getMavenExecutionListener();
     }
 
     public static void setMavenExecutionListener( ExecutionListener listener ) {
-        mavenExecutionListener = listener;
+        LauncherContext.current().setMavenExecutionListener( listener );
+    }
+
+    public static Set<ExecutionEvent.Type> getExecutionEventInterest() {
+        return LauncherContext.current().getExecutionEventInterest();
+    }
+
+    /**
+     * Declares the types of execution events the master wants, so that the others aren't even
+     * passed to the {@link #getMavenExecutionListener() listener}. Null means all of them.
+     */
+    public static void setExecutionEventInterest( Set<ExecutionEvent.Type> types ) {
+        LauncherContext.current().setExecutionEventInterest( types );
+    }
+
+    /**
+     * Sets the listener the result of each project is published to as soon as the project is
+     * done, and the result of the execution at the end.
+     */
+    public static void setProjectResultListener( ProjectResultListener listener ) {
+        LauncherContext.current().setProjectResultListener( listener );
+    }
+
+    public static ProjectResultListener getProjectResultListener() {
+        return LauncherContext.current().getProjectResultListener();
     }
 
     public static HudsonMavenExecutionResult getMavenExecutionResult() {
-        return hudsonMavenExecutionResult;
+        return LauncherContext.current().getMavenExecutionResult();
     }
 
     public static void setMavenExecutionResult( HudsonMavenExecutionResult result ) {
-        hudsonMavenExecutionResult = result;
+        LauncherContext.current().setMavenExecutionResult( result );
     }
 
     public static int main( String[] args ) throws Exception {
@@ -78,7 +106,7 @@ public class Maven3Launcher {
             MavenExecutionRequest request = getMavenExecutionRequest( args, container );
 
             MavenExecutionResult result = maven.execute( request );
-            hudsonMavenExecutionResult = new HudsonMavenExecutionResult( result );
+            LauncherContext.current().finish( new HudsonMavenExecutionResult( result ) );
             
             // we don't care about cli mavenExecutionResult will be study in the the plugin
             return 0;// cli.doMain( args, null );
@@ -90,12 +118,20 @@ public class Maven3Launcher {
     }
 
     private static MavenExecutionRequest getMavenExecutionRequest( String[] args, DefaultPlexusContainer container ) throws Exception {
+        LauncherContext context = LauncherContext.current();
+        ExecutionListener mavenExecutionListener = context.getMavenExecutionListener();
         MavenExecutionRequestBuilder mavenExecutionRequestBuilder = container
             .lookup( MavenExecutionRequestBuilder.class );
         MavenExecutionRequest request = mavenExecutionRequestBuilder.getMavenExecutionRequest( args, System.out );
         if ( mavenExecutionListener != null ) {
-            request.setExecutionListener( mavenExecutionListener );
+            request.setExecutionListener( BatchingExecutionListener.decorate(
+                FilteringExecutionListener.decorate( mavenExecutionListener, context.getExecutionEventInterest() ) ) );
         }
+        // these see all the events, whatever the master's listener is interested in
+        MojoProfiler profiler = MojoProfiler.createIfEnabled( request.getExecutionListener() );
+        context.setMojoProfiler( profiler );
+        request.setExecutionListener( ProjectResultPublisher.decorate(
+            profiler != null ? profiler : request.getExecutionListener(), context.getProjectResultListener() ) );
         return request;
     }
 
@@ -24,13 +24,22 @@
 package jenkins.maven3.agent;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import jenkins.maven3.agent.commons.AgentAddress;
+import jenkins.maven3.agent.commons.AgentConnection;
+import jenkins.maven3.agent.commons.BootstrapTimings;
+import jenkins.maven3.agent.commons.BulkTransport;
+import jenkins.maven3.agent.commons.CdsArchive;
+import jenkins.maven3.agent.commons.PackageIndex;
+import jenkins.maven3.agent.commons.PendingConnection;
+import jenkins.maven3.agent.commons.RealmLifecycleManager;
+import jenkins.maven3.agent.commons.RttEstimator;
 import org.codehaus.plexus.classworlds.launcher.Launcher;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.codehaus.plexus.classworlds.realm.NoSuchRealmException;
 
 import java.io.*;
-import java.net.Socket;
 import java.net.URL;
+import java.util.Map;
 
 
 /**
@@ -55,17 +64,18 @@ public class Maven33Main
      */
     private static Launcher launcher;
 
+    /**
+     * Cleans up the realms Maven creates during {@link #launch(String[])}.
+     */
+    private static RealmLifecycleManager realms;
+
+    private static final BootstrapTimings timings = new BootstrapTimings();
+
     @SuppressFBWarnings("PATH_TRAVERSAL_IN")
     public static void main(String... args) throws Exception {
-        String slaveAgentSocket = args[4];
-        int i = slaveAgentSocket.indexOf(':');
-        if (i > 0) {
-            main(new File(args[0]), new File(args[1]), new File(args[2]),
-                    new File(args[3]), slaveAgentSocket.substring(0, i), Integer.parseInt(slaveAgentSocket.substring(i+1)));
-        } else {
-            main(new File(args[0]), new File(args[1]), new File(args[2]),
-                    new File(args[3]), null, Integer.parseInt(slaveAgentSocket));
-        }
+        CdsArchive.relaunchIfEnabled(Maven33Main.class, args);
+        main(new File(args[0]), new File(args[1]), new File(args[2]),
+                new File(args[3]), AgentAddress.parse(args[4]));
     }
 
     @Deprecated
@@ -93,24 +103,45 @@ public class Maven33Main
      *            TCP socket that the launching Hudson will be listening to.
      *            This is used for the remoting communication.
      */
-    @SuppressFBWarnings({"DB_DUPLICATE_BRANCHES","NP_LOAD_OF_KNOWN_NULL_VALUE","NP_NULL_ON_SOME_PATH","UNENCRYPTED_SOCKET"})
-	public static void main(File m2Home, File remotingJar, File interceptorJar,
+    public static void main(File m2Home, File remotingJar, File interceptorJar,
                             File interceptorCommonJar, String agentIp, int tcpPort) throws Exception {
+        main(m2Home, remotingJar, interceptorJar, interceptorCommonJar, AgentAddress.tcp(agentIp, tcpPort));
+    }
+
+    /**
+     * @param agentAddress
+     *            Where the launching Hudson listens for the remoting communication,
+     *            see {@link AgentAddress} for the forms it can take.
+     */
+    @SuppressFBWarnings({"DB_DUPLICATE_BRANCHES","NP_LOAD_OF_KNOWN_NULL_VALUE","NP_NULL_ON_SOME_PATH"})
+    private static void main(File m2Home, File remotingJar, File interceptorJar,
+                             File interceptorCommonJar, AgentAddress agentAddress) throws Exception {
+        timings.dumpOnExit();
+        BulkTransport.startSession(System.getProperty(BulkTransport.ADDRESS_PROPERTY));
+
+        // connect while the classworlds configuration runs, remoting needs both
+        PendingConnection pendingConnection = PendingConnection.start(agentAddress, timings);
+
         // Unix master with Windows slave ends up passing path in Unix format,
         // so convert it to Windows format now so that no one chokes with the
         // path format later.
+        timings.start(BootstrapTimings.M2HOME_CANONICALIZATION);
         try {
             m2Home = m2Home.getCanonicalFile();
         } catch (IOException e) {
             // ignore. We'll check the error later if m2Home exists anyway
         }
+        timings.end(BootstrapTimings.M2HOME_CANONICALIZATION);
 
         if (!m2Home.exists()) {
             System.err.println("No such directory exists: " + m2Home);
             System.exit(1);
         }
 
+        timings.start(BootstrapTimings.VERSION_CHECK);
         versionCheck();
+        timings.end(BootstrapTimings.VERSION_CHECK);
+        pendingConnection.checkFailed();
 
         // expose variables used in the classworlds configuration
         System.setProperty("maven.home", m2Home.getPath());
@@ -119,39 +150,40 @@ public class Maven33Main
         System.setProperty("maven3.interceptor", (interceptorJar != null ? interceptorJar
                 : interceptorJar).getPath());
 
+        PackageIndex packageIndex = PackageIndex.of(m2Home, interceptorJar, interceptorCommonJar);
+        packageIndex.prepare();
+
         // load the default realms
+        timings.start(BootstrapTimings.CLASSWORLDS_CONFIGURE);
         launcher = new Launcher();
         launcher.setSystemClassLoader(Maven33Main.class.getClassLoader());
         launcher.configure(getClassWorldsConfStream());
+        timings.end(BootstrapTimings.CLASSWORLDS_CONFIGURE);
+        pendingConnection.checkFailed();
+        realms = new RealmLifecycleManager(launcher.getWorld());
+        packageIndex.update(launcher.getWorld().getRealm("plexus.core"));
 
 
         // create a realm for loading remoting subsystem.
         // this needs to be able to see maven.
+        timings.start(BootstrapTimings.REMOTING_REALM);
         ClassRealm remoting = launcher.getWorld().newRealm( "hudson-remoting", launcher.getSystemClassLoader() );
         remoting.setParentRealm(launcher.getWorld().getRealm("plexus.core"));
         remoting.addURL(remotingJar.toURI().toURL());
+        timings.end(BootstrapTimings.REMOTING_REALM);
 
-        final Socket s = new Socket(agentIp,tcpPort);
+        timings.start(BootstrapTimings.SOCKET_CONNECT_WAIT);
+        final AgentConnection connection = pendingConnection.get();
+        timings.end(BootstrapTimings.SOCKET_CONNECT_WAIT);
 
+        timings.start(BootstrapTimings.REMOTING_HANDSHAKE);
         Class remotingLauncher = remoting.loadClass("hudson.remoting.Launcher");
         remotingLauncher.getMethod("main",
                 new Class[] { InputStream.class, OutputStream.class }).invoke(
                 null,
                 new Object[] {
-                        // do partial close, since socket.getInputStream and
-                        // getOutputStream doesn't do it by
-                        new BufferedInputStream(new FilterInputStream(s
-                                .getInputStream()) {
-                            public void close() throws IOException {
-                                s.shutdownInput();
-                            }
-                        }),
-                        new BufferedOutputStream(new RealFilter33OutputStream(s
-                                .getOutputStream()) {
-                            public void close() throws IOException {
-                                s.shutdownOutput();
-                            }
-                        }) });
+                        connection.getInputStream(),
+                        connection.getOutputStream() });
         System.exit(0);
 	}
 
@@ -160,6 +192,7 @@ public class Maven33Main
      * @since 1.3
      */
     public static void addPlexusComponents(URL[] modules) {
+        timings.end(BootstrapTimings.REMOTING_HANDSHAKE);
         try {
             ClassRealm realm = launcher.getWorld().getRealm("plexus.core");
             for (URL url : modules) {
@@ -170,16 +203,102 @@ public class Maven33Main
         }
     }
 
+    /**
+     * Called by the code in remoting to find out where the startup time of this JVM went.
+     *
+     * @return phase name to duration in nanoseconds, in the order the phases started.
+     * @since 1.15
+     */
+    public static Map<String, Long> getBootstrapTimings() {
+        return timings.getDurations();
+    }
+
+    /**
+     * Called by the code in remoting with a round trip time to this agent the master measured,
+     * for instance when it pings the channel. The estimate decides how long flushes to the
+     * master may be coalesced.
+     *
+     * @param nanos
+     *            Round trip time in nanoseconds.
+     * @since 1.15
+     */
+    public static void addRoundTripSample(long nanos) {
+        RttEstimator.get().addSample(nanos);
+    }
+
+    /**
+     * Called by the code in remoting to find out the smoothed round trip time to the master
+     * in nanoseconds, 0 if not known.
+     * @since 1.15
+     */
+    public static long getRoundTripTime() {
+        return RttEstimator.get().getRoundTripTime();
+    }
+
+    /**
+     * Called by the code in remoting to send a large payload, such as test reports or artifacts,
+     * to the master over a connection of its own, so that it doesn't hold up the remoting channel.
+     *
+     * @param name
+     *            Tells the master what the payload is.
+     * @return stream to write the payload to. Closing it returns once the master has received it.
+     * @throws IOException
+     *            if the master didn't set up bulk connections, see {@link #isBulkTransportEnabled()}.
+     * @since 1.15
+     */
+    public static OutputStream openBulkStream(String name) throws IOException {
+        return BulkTransport.open(name);
+    }
+
+    /**
+     * Called by the code in remoting to send files, such as the module artifacts, to the master
+     * over a connection of their own. The files go from the file system cache to the socket
+     * without being copied through the Java heap.
+     *
+     * @param files
+     *            Name to tell the master for each file, to the file.
+     * @return the number of file bytes sent, once the master has acknowledged them.
+     * @since 1.15
+     */
+    public static long sendFiles(String name, Map<String, File> files) throws IOException {
+        return BulkTransport.sendFiles(name, files);
+    }
+
+    /**
+     * Called by the code in remoting to hand over the secret the master expects on the
+     * connections of {@link #openBulkStream(String)} and {@link #sendFiles(String, Map)}.
+     * It doesn't go on the command line, where other users of the node could see it.
+     * @since 1.15
+     */
+    public static void setBulkTransportToken(String token) {
+        BulkTransport.setToken(token);
+    }
+
+    /**
+     * Called by the code in remoting to find out whether {@link #openBulkStream(String)} and
+     * {@link #sendFiles(String, Map)} can be used.
+     * @since 1.15
+     */
+    public static boolean isBulkTransportEnabled() {
+        return BulkTransport.isEnabled();
+    }
+
     /**
      * Called by the code in remoting to launch.
      */
     public static int launch( String[] args ) throws Exception {
+        // the first call back from the master tells us the channel is up
+        timings.end(BootstrapTimings.REMOTING_HANDSHAKE);
+        timings.mark(BootstrapTimings.FIRST_LAUNCH);
 
+        realms.beforeLaunch();
         try {
             launcher.launch( args );
         } catch ( Throwable e ) {
             e.printStackTrace();
             throw new Exception( e );
+        } finally {
+            realms.afterLaunch();
         }
         return launcher.getExitCode();
     }
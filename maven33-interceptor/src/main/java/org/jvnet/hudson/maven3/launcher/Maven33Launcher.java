@@ -25,6 +25,7 @@ import org.apache.maven.cli.MavenExecutionRequestBuilder;
 import org.apache.maven.cli.logging.Slf4jLoggerManager;
 import org.apache.maven.eventspy.EventSpy;
 import org.apache.maven.eventspy.internal.EventSpyDispatcher;
+import org.apache.maven.execution.ExecutionEvent;
 import org.apache.maven.execution.ExecutionListener;
 import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionResult;
@@ -34,10 +35,18 @@ import org.codehaus.plexus.DefaultPlexusContainer;
 import org.codehaus.plexus.PlexusConstants;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.jvnet.hudson.maven3.listeners.BatchingExecutionListener;
+import org.jvnet.hudson.maven3.listeners.FilteringEventSpy;
+import org.jvnet.hudson.maven3.listeners.FilteringExecutionListener;
 import org.jvnet.hudson.maven3.listeners.HudsonMavenExecutionResult;
+import org.jvnet.hudson.maven3.listeners.MojoProfiler;
+import org.jvnet.hudson.maven3.listeners.ProjectResultListener;
+import org.jvnet.hudson.maven3.listeners.ProjectResultPublisher;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author Olivier Lamy
@@ -46,46 +55,83 @@ import java.util.List;
 public class Maven33Launcher
 {
 
-    private static HudsonMavenExecutionResult hudsonMavenExecutionResult;
+    public static ExecutionListener getMavenExecutionListener()
+    {
+        return LauncherContext.current().getMavenExecutionListener();
+    }
 
-    private static ExecutionListener mavenExecutionListener;
+    public static void setMavenExecutionListener( ExecutionListener listener )
+    {
+        LauncherContext.current().setMavenExecutionListener( listener );
+    }
 
-    private static List<EventSpy> eventSpiesList;
+    public static Set<ExecutionEvent.Type> getExecutionEventInterest()
+    {
+        return LauncherContext.current().getExecutionEventInterest();
+    }
 
-    public static ExecutionListener getMavenExecutionListener()
+    /**
+     * Declares the types of execution events the master wants, so that the others aren't even
+     * passed to the {@link #getMavenExecutionListener() listener}. Null means all of them.
+     */
+    public static void setExecutionEventInterest( Set<ExecutionEvent.Type> types )
     {
-        return mavenExecutionListener;
+        LauncherContext.current().setExecutionEventInterest( types );
     }
 
-    public static void setMavenExecutionListener( ExecutionListener listener )
+    public static Collection<String> getEventSpyInterest()
     {
-        mavenExecutionListener = listener;
+        return LauncherContext.current().getEventSpyInterest();
+    }
+
+    /**
+     * Declares the classes of events, by name, the master wants its {@link #getEventSpies()
+     * event spies} to see. Null means all events.
+     */
+    public static void setEventSpyInterest( Collection<String> eventClassNames )
+    {
+        LauncherContext.current().setEventSpyInterest( eventClassNames );
     }
 
     public static List<EventSpy> getEventSpies()
     {
-        return eventSpiesList;
+        return LauncherContext.current().getEventSpies();
     }
 
     public static void setEventSpies( List<EventSpy> theEventSpies )
     {
-        eventSpiesList = theEventSpies;
+        LauncherContext.current().setEventSpies( theEventSpies );
+    }
+
+    /**
+     * Sets the listener the result of each project is published to as soon as the project is
+     * done, and the result of the execution at the end.
+     */
+    public static void setProjectResultListener( ProjectResultListener listener )
+    {
+        LauncherContext.current().setProjectResultListener( listener );
+    }
+
+    public static ProjectResultListener getProjectResultListener()
+    {
+        return LauncherContext.current().getProjectResultListener();
     }
 
     public static HudsonMavenExecutionResult getMavenExecutionResult()
     {
-        return hudsonMavenExecutionResult;
+        return LauncherContext.current().getMavenExecutionResult();
     }
 
     public static void setMavenExecutionResult( HudsonMavenExecutionResult result )
     {
-        hudsonMavenExecutionResult = result;
+        LauncherContext.current().setMavenExecutionResult( result );
     }
 
     public static int main( String[] args )
         throws Exception
     {
         ClassLoader orig = Thread.currentThread().getContextClassLoader();
+        List<EventSpy> jenkinsEventSpies = null;
         try
         {
 
@@ -94,7 +140,7 @@ public class Maven33Launcher
             ContainerConfiguration cc =
                 new DefaultContainerConfiguration()
                     .setName( "maven" )
-                    .setRealm( containerRealm )
+                    .setRealm( SisuIndexCache.containerRealm( containerRealm ) )
                     .setClassPathScanning( PlexusConstants.SCANNING_INDEX )
                     .setAutoWiring( true );
 
@@ -106,6 +152,7 @@ public class Maven33Launcher
 
             EventSpyDispatcher eventSpyDispatcher = container.lookup( EventSpyDispatcher.class );
 
+            List<EventSpy> eventSpiesList = LauncherContext.current().getEventSpies();
             if ( eventSpiesList != null && !eventSpiesList.isEmpty())
             {
                 List<EventSpy> eventSpies = eventSpyDispatcher.getEventSpies();
@@ -113,7 +160,8 @@ public class Maven33Launcher
                 {
                     eventSpies = new ArrayList<>( 1 );
                 }
-                eventSpies.addAll( eventSpiesList );
+                jenkinsEventSpies = AsyncEventSpy.wrapIfEnabled( eventSpiesList );
+                eventSpies.addAll( FilteringEventSpy.decorate( jenkinsEventSpies, LauncherContext.current().getEventSpyInterest() ) );
 
                 eventSpyDispatcher.setEventSpies( eventSpies );
             }
@@ -128,7 +176,7 @@ public class Maven33Launcher
 
             eventSpyDispatcher.close();
 
-            hudsonMavenExecutionResult = new HudsonMavenExecutionResult( result );
+            LauncherContext.current().finish( new HudsonMavenExecutionResult( result ) );
 
             // we don't care about cli mavenExecutionResult will be study in the plugin
             return 0;// cli.doMain( args, null );
@@ -139,6 +187,8 @@ public class Maven33Launcher
         }
         finally
         {
+            // normally stopped by EventSpyDispatcher#close(), but not when the build failed first
+            AsyncEventSpy.stopAll( jenkinsEventSpies );
             Thread.currentThread().setContextClassLoader( orig );
         }
     }
@@ -146,13 +196,21 @@ public class Maven33Launcher
     private static MavenExecutionRequest getMavenExecutionRequest( String[] args, DefaultPlexusContainer container )
         throws Exception
     {
+        LauncherContext context = LauncherContext.current();
+        ExecutionListener mavenExecutionListener = context.getMavenExecutionListener();
         MavenExecutionRequestBuilder mavenExecutionRequestBuilder =
             container.lookup( MavenExecutionRequestBuilder.class );
         MavenExecutionRequest request = mavenExecutionRequestBuilder.getMavenExecutionRequest( args, System.out );
         if ( mavenExecutionListener != null )
         {
-            request.setExecutionListener( mavenExecutionListener );
+            request.setExecutionListener( BatchingExecutionListener.decorate(
+                FilteringExecutionListener.decorate( mavenExecutionListener, context.getExecutionEventInterest() ) ) );
         }
+        // these see all the events, whatever the master's listener is interested in
+        MojoProfiler profiler = MojoProfiler.createIfEnabled( request.getExecutionListener() );
+        context.setMojoProfiler( profiler );
+        request.setExecutionListener( ProjectResultPublisher.decorate(
+            profiler != null ? profiler : request.getExecutionListener(), context.getProjectResultListener() ) );
         return request;
     }
 
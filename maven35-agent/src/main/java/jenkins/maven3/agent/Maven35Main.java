@@ -24,13 +24,29 @@
 package jenkins.maven3.agent;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import jenkins.maven3.agent.commons.AgentAddress;
+import jenkins.maven3.agent.commons.AgentConnection;
+import jenkins.maven3.agent.commons.AgentDaemon;
+import jenkins.maven3.agent.commons.BootstrapTimings;
+import jenkins.maven3.agent.commons.BulkTransport;
+import jenkins.maven3.agent.commons.CdsArchive;
+import jenkins.maven3.agent.commons.PackageIndex;
+import jenkins.maven3.agent.commons.PendingConnection;
+import jenkins.maven3.agent.commons.RealmLifecycleManager;
+import jenkins.maven3.agent.commons.RttEstimator;
+import org.codehaus.plexus.classworlds.ClassWorld;
 import org.codehaus.plexus.classworlds.launcher.Launcher;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
 import org.codehaus.plexus.classworlds.realm.NoSuchRealmException;
 
 import java.io.*;
-import java.net.Socket;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 
 
 /**
@@ -55,17 +71,68 @@ public class Maven35Main
      */
     private static Launcher launcher;
 
+    /**
+     * Cleans up the realms Maven creates during {@link #launch(String[])}.
+     */
+    private static RealmLifecycleManager realms;
+
+    private static final BootstrapTimings timings = new BootstrapTimings();
+
+    private static final PrintStream STDOUT = System.out;
+
+    private static final PrintStream STDERR = System.err;
+
+    /**
+     * When set, the JVM is kept alive after its remoting session ends, and later launches of
+     * the agent on the same node hand their session over to it through {@link AgentDaemon},
+     * so that they skip JVM startup and classworlds configuration. The daemon connects to the
+     * master exactly like a freshly launched agent would, with the system properties and the
+     * stdout and stderr of the agent that handed the session over. A launch with another
+     * environment, other JVM options or other agent settings, which a session can't change,
+     * is left to its own agent. Only the agent for Maven 3.5 and later has a daemon mode.
+     */
+    private static final boolean DAEMON = Boolean.getBoolean("jenkins.maven3.agent.daemon");
+
+    /**
+     * How long (in milliseconds) the daemon waits for the next launch before it exits.
+     */
+    private static final int DAEMON_IDLE_TIMEOUT = Integer.getInteger("jenkins.maven3.agent.daemon.idleTimeout", 10 * 60 * 1000);
+
+    /**
+     * System properties as they were right after the classworlds configuration,
+     * restored between daemon sessions.
+     */
+    private static Properties baselineProperties;
+
+    /**
+     * Realms that exist right after the classworlds configuration. Everything else
+     * was created by a build and is discarded between daemon sessions.
+     */
+    private static Set<String> baselineRealms;
+
+    /**
+     * Set in daemon mode.
+     */
+    private static AgentDaemon daemon;
+
+    /**
+     * How this JVM was launched, in daemon mode. Only launches that match it can be served.
+     */
+    private static AgentDaemon.Launch ownLaunch;
+
     @SuppressFBWarnings("PATH_TRAVERSAL_IN")
     public static void main(String... args) throws Exception {
-        String slaveAgentSocket = args[4];
-        int i = slaveAgentSocket.indexOf(':');
-        if (i > 0) {
-            main(new File(args[0]), new File(args[1]), new File(args[2]),
-                    new File(args[3]), slaveAgentSocket.substring(0, i), Integer.parseInt(slaveAgentSocket.substring(i+1)));
-        } else {
-            main(new File(args[0]), new File(args[1]), new File(args[2]),
-                    new File(args[3]), null, Integer.parseInt(slaveAgentSocket));
+        CdsArchive.relaunchIfEnabled(Maven35Main.class, args);
+        if (DAEMON) {
+            daemon = openDaemon();
+            AgentDaemon.Launch launch = AgentDaemon.Launch.current(args, (Properties) System.getProperties().clone());
+            if (daemon != null && !daemon.tryBecomeDaemon() && daemon.handOver(launch)) {
+                System.exit(0);
+            }
+            ownLaunch = launch;
         }
+        main(new File(args[0]), new File(args[1]), new File(args[2]),
+                new File(args[3]), AgentAddress.parse(args[4]));
     }
 
     @Deprecated
@@ -93,24 +160,45 @@ public class Maven35Main
      *            TCP socket that the launching Hudson will be listening to.
      *            This is used for the remoting communication.
      */
-    @SuppressFBWarnings({"DB_DUPLICATE_BRANCHES","NP_LOAD_OF_KNOWN_NULL_VALUE","NP_NULL_ON_SOME_PATH","UNENCRYPTED_SOCKET"})
-	public static void main(File m2Home, File remotingJar, File interceptorJar,
+    public static void main(File m2Home, File remotingJar, File interceptorJar,
                             File interceptorCommonJar, String agentIp, int tcpPort) throws Exception {
+        main(m2Home, remotingJar, interceptorJar, interceptorCommonJar, AgentAddress.tcp(agentIp, tcpPort));
+    }
+
+    /**
+     * @param agentAddress
+     *            Where the launching Hudson listens for the remoting communication,
+     *            see {@link AgentAddress} for the forms it can take.
+     */
+    @SuppressFBWarnings({"DB_DUPLICATE_BRANCHES","NP_LOAD_OF_KNOWN_NULL_VALUE","NP_NULL_ON_SOME_PATH"})
+    private static void main(File m2Home, File remotingJar, File interceptorJar,
+                             File interceptorCommonJar, AgentAddress agentAddress) throws Exception {
+        timings.dumpOnExit();
+        BulkTransport.startSession(System.getProperty(BulkTransport.ADDRESS_PROPERTY));
+
+        // connect while the classworlds configuration runs, remoting needs both
+        PendingConnection pendingConnection = PendingConnection.start(agentAddress, timings);
+
         // Unix master with Windows slave ends up passing path in Unix format,
         // so convert it to Windows format now so that no one chokes with the
         // path format later.
+        timings.start(BootstrapTimings.M2HOME_CANONICALIZATION);
         try {
             m2Home = m2Home.getCanonicalFile();
         } catch (IOException e) {
             // ignore. We'll check the error later if m2Home exists anyway
         }
+        timings.end(BootstrapTimings.M2HOME_CANONICALIZATION);
 
         if (!m2Home.exists()) {
             System.err.println("No such directory exists: " + m2Home);
             System.exit(1);
         }
 
+        timings.start(BootstrapTimings.VERSION_CHECK);
         versionCheck();
+        timings.end(BootstrapTimings.VERSION_CHECK);
+        pendingConnection.checkFailed();
 
         // expose variables used in the classworlds configuration
         System.setProperty("maven.home", m2Home.getPath());
@@ -119,47 +207,180 @@ public class Maven35Main
         System.setProperty("maven3.interceptor", (interceptorJar != null ? interceptorJar
                 : interceptorJar).getPath());
 
+        PackageIndex packageIndex = PackageIndex.of(m2Home, interceptorJar, interceptorCommonJar);
+        packageIndex.prepare();
+
         // load the default realms
+        timings.start(BootstrapTimings.CLASSWORLDS_CONFIGURE);
         launcher = new Launcher();
         launcher.setSystemClassLoader(Maven35Main.class.getClassLoader());
         launcher.configure(getClassWorldsConfStream());
+        timings.end(BootstrapTimings.CLASSWORLDS_CONFIGURE);
+        pendingConnection.checkFailed();
+        realms = new RealmLifecycleManager(launcher.getWorld());
+        if (Boolean.getBoolean(RealmLifecycleManager.CONTAINER_REUSE_PROPERTY)) {
+            realms.leaveToContainer();
+        }
+        packageIndex.update(launcher.getWorld().getRealm("plexus.core"));
 
 
         // create a realm for loading remoting subsystem.
         // this needs to be able to see maven.
+        timings.start(BootstrapTimings.REMOTING_REALM);
         ClassRealm remoting = launcher.getWorld().newRealm( "hudson-remoting", launcher.getSystemClassLoader() );
         remoting.setParentRealm(launcher.getWorld().getRealm("plexus.core"));
         remoting.addURL(remotingJar.toURI().toURL());
+        timings.end(BootstrapTimings.REMOTING_REALM);
+
+        if (isDaemon()) {
+            baselineProperties = (Properties) System.getProperties().clone();
+            baselineRealms = new HashSet<>();
+            for (Object realm : launcher.getWorld().getRealms()) {
+                baselineRealms.add(((ClassRealm) realm).getId());
+            }
+        }
 
-        final Socket s = new Socket(agentIp,tcpPort);
+        timings.start(BootstrapTimings.SOCKET_CONNECT_WAIT);
+        AgentConnection connection = pendingConnection.get();
+        timings.end(BootstrapTimings.SOCKET_CONNECT_WAIT);
+
+        try {
+            runSession(remoting, connection);
+        } finally {
+            connection.close();
+        }
+
+        if (isDaemon()) {
+            serveSessions(remoting);
+        }
+        System.exit(0);
+	}
 
+    /**
+     * Runs one remoting session over the given connection. Returns when the channel is closed.
+     */
+    private static void runSession(ClassRealm remoting, AgentConnection connection) throws Exception {
+        timings.start(BootstrapTimings.REMOTING_HANDSHAKE);
         Class remotingLauncher = remoting.loadClass("hudson.remoting.Launcher");
         remotingLauncher.getMethod("main",
                 new Class[] { InputStream.class, OutputStream.class }).invoke(
                 null,
                 new Object[] {
-                        // do partial close, since socket.getInputStream and
-                        // getOutputStream doesn't do it by
-                        new BufferedInputStream(new FilterInputStream(s
-                                .getInputStream()) {
-                            public void close() throws IOException {
-                                s.shutdownInput();
-                            }
-                        }),
-                        new BufferedOutputStream(new RealFilter35OutputStream(s
-                                .getOutputStream()) {
-                            public void close() throws IOException {
-                                s.shutdownOutput();
-                            }
-                        }) });
-        System.exit(0);
-	}
+                        connection.getInputStream(),
+                        connection.getOutputStream() });
+    }
+
+    private static AgentDaemon openDaemon() {
+        try {
+            return AgentDaemon.open();
+        } catch (IOException e) {
+            System.err.println("Not running as a daemon: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isDaemon() {
+        return daemon != null && daemon.isDaemon() && ownLaunch != null;
+    }
+
+    /**
+     * Keeps the JVM around and runs the launches other agents hand over,
+     * one at a time, until none arrives within the idle timeout.
+     */
+    private static void serveSessions(ClassRealm remoting) throws Exception {
+        System.err.println("Maven agent waiting for the next launch in " + daemon.getDirectory());
+        while (true) {
+            resetState();
+            AgentDaemon.Session session = daemon.nextSession(DAEMON_IDLE_TIMEOUT);
+            if (session == null) {
+                System.err.println("No new launch within " + DAEMON_IDLE_TIMEOUT + "ms, exiting");
+                return;
+            }
+            AgentDaemon.Launch launch = session.getLaunch();
+            String mismatch = ownLaunch.mismatch(launch);
+            if (mismatch != null) {
+                System.err.println("Leaving a launch with " + mismatch + " to its agent");
+                session.finish(false);
+                continue;
+            }
+            String[] args = launch.getArgs();
+            AgentConnection connection;
+            try {
+                connection = AgentConnection.open(AgentAddress.parse(args[4]));
+            } catch (IOException e) {
+                System.err.println("Failed to connect to " + args[4] + ", leaving the launch to its agent: " + e);
+                session.finish(false);
+                continue;
+            }
+            applySystemProperties(launch);
+            BulkTransport.startSession(launch.getSystemProperties().get(BulkTransport.ADDRESS_PROPERTY));
+            System.setOut(session.getStdout());
+            System.setErr(session.getStderr());
+            try {
+                runSession(remoting, connection);
+            } catch (Exception e) {
+                // one broken session shouldn't take the daemon down
+                e.printStackTrace();
+            } finally {
+                connection.close();
+                System.setOut(STDOUT);
+                System.setErr(STDERR);
+                session.finish(true);
+            }
+        }
+    }
+
+    /**
+     * Gives the session the system properties its agent was started with in place of the
+     * ones this JVM was started with, on top of the ones set since.
+     */
+    private static void applySystemProperties(AgentDaemon.Launch launch) {
+        Properties current = System.getProperties();
+        synchronized (current) {
+            for (String name : ownLaunch.getSystemProperties().keySet()) {
+                if (!launch.getSystemProperties().containsKey(name)) {
+                    current.remove(name);
+                }
+            }
+            current.putAll(launch.getSystemProperties());
+        }
+    }
+
+    /**
+     * Brings the JVM back to the state it had right after the classworlds configuration,
+     * so that the next session starts clean while the {@code plexus.core} realm is kept.
+     */
+    private static void resetState() {
+        Properties current = System.getProperties();
+        synchronized (current) {
+            current.clear();
+            current.putAll(baselineProperties);
+        }
+        System.setOut(STDOUT);
+        System.setErr(STDERR);
+        BulkTransport.endSession();
+        Thread.currentThread().setContextClassLoader(Maven35Main.class.getClassLoader());
+
+        // whatever a build left behind outside of launch(), unless the kept container owns it
+        ClassWorld world = launcher.getWorld();
+        for (Object o : new ArrayList<>(world.getRealms())) {
+            ClassRealm realm = (ClassRealm) o;
+            if (!baselineRealms.contains(realm.getId()) && !realms.isRetained(realm.getId())) {
+                try {
+                    world.disposeRealm(realm.getId());
+                } catch (NoSuchRealmException e) {
+                    // already gone
+                }
+            }
+        }
+    }
 
     /**
      * Called by the code in remoting to add more plexus components.
      * @since 1.3
      */
     public static void addPlexusComponents(URL[] modules) {
+        timings.end(BootstrapTimings.REMOTING_HANDSHAKE);
         try {
             ClassRealm realm = launcher.getWorld().getRealm("plexus.core");
             for (URL url : modules) {
@@ -170,16 +391,102 @@ public class Maven35Main
         }
     }
 
+    /**
+     * Called by the code in remoting to find out where the startup time of this JVM went.
+     *
+     * @return phase name to duration in nanoseconds, in the order the phases started.
+     * @since 1.15
+     */
+    public static Map<String, Long> getBootstrapTimings() {
+        return timings.getDurations();
+    }
+
+    /**
+     * Called by the code in remoting with a round trip time to this agent the master measured,
+     * for instance when it pings the channel. The estimate decides how long flushes to the
+     * master may be coalesced.
+     *
+     * @param nanos
+     *            Round trip time in nanoseconds.
+     * @since 1.15
+     */
+    public static void addRoundTripSample(long nanos) {
+        RttEstimator.get().addSample(nanos);
+    }
+
+    /**
+     * Called by the code in remoting to find out the smoothed round trip time to the master
+     * in nanoseconds, 0 if not known.
+     * @since 1.15
+     */
+    public static long getRoundTripTime() {
+        return RttEstimator.get().getRoundTripTime();
+    }
+
+    /**
+     * Called by the code in remoting to send a large payload, such as test reports or artifacts,
+     * to the master over a connection of its own, so that it doesn't hold up the remoting channel.
+     *
+     * @param name
+     *            Tells the master what the payload is.
+     * @return stream to write the payload to. Closing it returns once the master has received it.
+     * @throws IOException
+     *            if the master didn't set up bulk connections, see {@link #isBulkTransportEnabled()}.
+     * @since 1.15
+     */
+    public static OutputStream openBulkStream(String name) throws IOException {
+        return BulkTransport.open(name);
+    }
+
+    /**
+     * Called by the code in remoting to send files, such as the module artifacts, to the master
+     * over a connection of their own. The files go from the file system cache to the socket
+     * without being copied through the Java heap.
+     *
+     * @param files
+     *            Name to tell the master for each file, to the file.
+     * @return the number of file bytes sent, once the master has acknowledged them.
+     * @since 1.15
+     */
+    public static long sendFiles(String name, Map<String, File> files) throws IOException {
+        return BulkTransport.sendFiles(name, files);
+    }
+
+    /**
+     * Called by the code in remoting to hand over the secret the master expects on the
+     * connections of {@link #openBulkStream(String)} and {@link #sendFiles(String, Map)}.
+     * It doesn't go on the command line, where other users of the node could see it.
+     * @since 1.15
+     */
+    public static void setBulkTransportToken(String token) {
+        BulkTransport.setToken(token);
+    }
+
+    /**
+     * Called by the code in remoting to find out whether {@link #openBulkStream(String)} and
+     * {@link #sendFiles(String, Map)} can be used.
+     * @since 1.15
+     */
+    public static boolean isBulkTransportEnabled() {
+        return BulkTransport.isEnabled();
+    }
+
     /**
      * Called by the code in remoting to launch.
      */
     public static int launch( String[] args ) throws Exception {
+        // the first call back from the master tells us the channel is up
+        timings.end(BootstrapTimings.REMOTING_HANDSHAKE);
+        timings.mark(BootstrapTimings.FIRST_LAUNCH);
 
+        realms.beforeLaunch();
         try {
             launcher.launch( args );
         } catch ( Throwable e ) {
             e.printStackTrace();
             throw new Exception( e );
+        } finally {
+            realms.afterLaunch();
         }
         return launcher.getExitCode();
     }
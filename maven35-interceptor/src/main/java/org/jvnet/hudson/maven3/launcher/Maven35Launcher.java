@@ -27,21 +27,38 @@ import org.apache.maven.cli.CommonCliRequestFactory;
 import org.apache.maven.cli.MavenExecutionRequestBuilder;
 import org.apache.maven.eventspy.EventSpy;
 import org.apache.maven.eventspy.internal.EventSpyDispatcher;
+import org.apache.maven.execution.ExecutionEvent;
 import org.apache.maven.execution.ExecutionListener;
 import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionResult;
+import org.apache.maven.plugin.ExtensionRealmCache;
+import org.apache.maven.plugin.PluginArtifactsCache;
+import org.apache.maven.plugin.PluginDescriptorCache;
+import org.apache.maven.plugin.PluginRealmCache;
+import org.apache.maven.project.ProjectRealmCache;
 import org.codehaus.plexus.ContainerConfiguration;
 import org.codehaus.plexus.DefaultContainerConfiguration;
 import org.codehaus.plexus.DefaultPlexusContainer;
 import org.codehaus.plexus.PlexusConstants;
 import org.codehaus.plexus.classworlds.ClassWorld;
 import org.codehaus.plexus.classworlds.realm.ClassRealm;
+import org.codehaus.plexus.classworlds.realm.NoSuchRealmException;
 import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.jvnet.hudson.maven3.listeners.BatchingExecutionListener;
+import org.jvnet.hudson.maven3.listeners.FilteringEventSpy;
+import org.jvnet.hudson.maven3.listeners.FilteringExecutionListener;
 import org.jvnet.hudson.maven3.listeners.HudsonMavenExecutionResult;
+import org.jvnet.hudson.maven3.listeners.MojoProfiler;
+import org.jvnet.hudson.maven3.listeners.ProjectResultListener;
+import org.jvnet.hudson.maven3.listeners.ProjectResultPublisher;
 import org.slf4j.ILoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * @author Olivier Lamy
@@ -50,73 +67,188 @@ import java.util.List;
 public class Maven35Launcher
 {
 
-    private static HudsonMavenExecutionResult hudsonMavenExecutionResult;
+    /**
+     * Keeps one initialized Plexus container across builds in a long-lived agent JVM, see the
+     * daemon mode of the Maven 3.5 agent. The agent leaves the class realms to the container
+     * when this is set.
+     */
+    private static final boolean REUSE_CONTAINER = Boolean.getBoolean( "jenkins.maven3.launcher.container.reuse" );
 
-    private static ExecutionListener mavenExecutionListener;
+    /**
+     * Number of builds a kept container serves before it is recycled.
+     */
+    private static final int MAX_CONTAINER_REUSE = Integer.getInteger( "jenkins.maven3.launcher.container.maxReuse", 20 );
 
-    private static List<EventSpy> eventSpiesList;
+    /**
+     * Set to false to keep Maven's plugin and project realm caches across builds as well.
+     */
+    private static final boolean FLUSH_CONTAINER_CACHES =
+        !"false".equals( System.getProperty( "jenkins.maven3.launcher.container.flushCaches" ) );
+
+    private static DefaultPlexusContainer reusableContainer;
+
+    private static int reusableContainerUses;
+
+    private static boolean reusableContainerHealthy;
+
+    /**
+     * Set while an execution uses the kept container. Executions running next to it get a
+     * container of their own.
+     */
+    private static boolean reusableContainerInUse;
+
+    /**
+     * The spies of the kept container itself, without the ones added for a build.
+     */
+    private static List<EventSpy> containerEventSpies;
 
     public static ExecutionListener getMavenExecutionListener()
     {
-        return mavenExecutionListener;
+        return LauncherContext.current().getMavenExecutionListener();
     }
 
     public static void setMavenExecutionListener( ExecutionListener listener )
     {
-        mavenExecutionListener = listener;
+        LauncherContext.current().setMavenExecutionListener( listener );
+    }
+
+    public static Set<ExecutionEvent.Type> getExecutionEventInterest()
+    {
+        return LauncherContext.current().getExecutionEventInterest();
+    }
+
+    /**
+     * Declares the types of execution events the master wants, so that the others aren't even
+     * passed to the {@link #getMavenExecutionListener() listener}. Null means all of them.
+     */
+    public static void setExecutionEventInterest( Set<ExecutionEvent.Type> types )
+    {
+        LauncherContext.current().setExecutionEventInterest( types );
+    }
+
+    public static Collection<String> getEventSpyInterest()
+    {
+        return LauncherContext.current().getEventSpyInterest();
+    }
+
+    /**
+     * Declares the classes of events, by name, the master wants its {@link #getEventSpies()
+     * event spies} to see. Null means all events.
+     */
+    public static void setEventSpyInterest( Collection<String> eventClassNames )
+    {
+        LauncherContext.current().setEventSpyInterest( eventClassNames );
     }
 
     public static List<EventSpy> getEventSpies()
     {
-        return eventSpiesList;
+        return LauncherContext.current().getEventSpies();
     }
 
     public static void setEventSpies( List<EventSpy> theEventSpies )
     {
-        eventSpiesList = theEventSpies;
+        LauncherContext.current().setEventSpies( theEventSpies );
+    }
+
+    /**
+     * Durations in milliseconds of the startup stages of the last launch.
+     */
+    public static Map<String, Long> getStartupTimings()
+    {
+        return LauncherContext.current().getStartupTimings();
+    }
+
+    /**
+     * Sets the listener the result of each project is published to as soon as the project is
+     * done, and the result of the execution at the end.
+     */
+    public static void setProjectResultListener( ProjectResultListener listener )
+    {
+        LauncherContext.current().setProjectResultListener( listener );
+    }
+
+    public static ProjectResultListener getProjectResultListener()
+    {
+        return LauncherContext.current().getProjectResultListener();
     }
 
     public static HudsonMavenExecutionResult getMavenExecutionResult()
     {
-        return hudsonMavenExecutionResult;
+        return LauncherContext.current().getMavenExecutionResult();
     }
 
     public static void setMavenExecutionResult( HudsonMavenExecutionResult result )
     {
-        hudsonMavenExecutionResult = result;
+        LauncherContext.current().setMavenExecutionResult( result );
     }
 
     public static int main(String[] args , ClassWorld classWorld)
         throws Exception
     {
         ClassLoader orig = Thread.currentThread().getContextClassLoader();
+        LauncherContext context = LauncherContext.current();
+        List<EventSpy> jenkinsEventSpies = null;
+        DefaultPlexusContainer acquiredContainer = null;
+        boolean healthy = true;
         try
         {
 
-            ClassRealm containerRealm = (ClassRealm) Thread.currentThread().getContextClassLoader();
+            final ClassRealm containerRealm = (ClassRealm) Thread.currentThread().getContextClassLoader();
+            StartupTimings startup = new StartupTimings();
 
-            ContainerConfiguration cc =
-                new DefaultContainerConfiguration()
-                    .setName( "maven" )
-                    .setRealm( containerRealm )
-                    .setClassPathScanning( PlexusConstants.SCANNING_INDEX )
-                    .setAutoWiring( true )
-                    .setJSR250Lifecycle( true );
-
-            CommonCliRequestFactory commonCliRequestFactory = new CommonCliRequestFactory();
-            CommonCliRequest commonCliRequest = commonCliRequestFactory.create( args );
-
-            DefaultPlexusContainer container = new DefaultPlexusContainer( cc, new AbstractModule() {
+            final CommonCliRequestFactory commonCliRequestFactory = new CommonCliRequestFactory();
+            final CommonCliRequest commonCliRequest = startup.run( "cli", new Callable<CommonCliRequest>()
+            {
+                @Override
+                public CommonCliRequest call()
+                    throws Exception
+                {
+                    return commonCliRequestFactory.create( args );
+                }
+            } );
 
+            // not next to the CLI parsing: logging has to be configured before the container
+            // creates its first logger, or the level of the simple logger is fixed at INFO
+            final DefaultPlexusContainer container = startup.run( "container", new Callable<DefaultPlexusContainer>()
+            {
                 @Override
-                protected void configure() {
-                    bind( ILoggerFactory.class ).toInstance( commonCliRequestFactory.getSlf4jLoggerFactory() );
+                public DefaultPlexusContainer call()
+                    throws Exception
+                {
+                    if ( REUSE_CONTAINER )
+                    {
+                        return acquireContainer( containerRealm, commonCliRequestFactory );
+                    }
+                    return newContainer( containerRealm, commonCliRequestFactory );
                 }
-            });
+            } );
+            acquiredContainer = container;
             container.setLoggerManager( commonCliRequestFactory.getPlexusLoggerManager() );
 
+            Maven maven = startup.run( "maven", new Callable<Maven>()
+            {
+                @Override
+                public Maven call()
+                    throws Exception
+                {
+                    return (Maven) container.lookup( "org.apache.maven.Maven", "default" );
+                }
+            } );
+
             EventSpyDispatcher eventSpyDispatcher = container.lookup( EventSpyDispatcher.class );
 
+            if ( REUSE_CONTAINER && container == reusableContainer )
+            {
+                if ( containerEventSpies == null )
+                {
+                    containerEventSpies = eventSpyDispatcher.getEventSpies() != null
+                        ? new ArrayList<>( eventSpyDispatcher.getEventSpies() ) : new ArrayList<EventSpy>();
+                }
+                // drop the spies the previous build added
+                eventSpyDispatcher.setEventSpies( new ArrayList<>( containerEventSpies ) );
+            }
+
+            List<EventSpy> eventSpiesList = context.getEventSpies();
             if ( eventSpiesList != null && !eventSpiesList.isEmpty())
             {
                 List<EventSpy> eventSpies = eventSpyDispatcher.getEventSpies();
@@ -124,14 +256,23 @@ public class Maven35Launcher
                 {
                     eventSpies = new ArrayList<>( 1 );
                 }
-                eventSpies.addAll( eventSpiesList );
+                jenkinsEventSpies = AsyncEventSpy.wrapIfEnabled( eventSpiesList );
+                eventSpies.addAll( FilteringEventSpy.decorate( jenkinsEventSpies, context.getEventSpyInterest() ) );
 
                 eventSpyDispatcher.setEventSpies( eventSpies );
             }
 
-            MavenExecutionRequest request = getMavenExecutionRequest( commonCliRequest, container );
+            MavenExecutionRequest request = startup.run( "request", new Callable<MavenExecutionRequest>()
+            {
+                @Override
+                public MavenExecutionRequest call()
+                    throws Exception
+                {
+                    return getMavenExecutionRequest( commonCliRequest, container, context );
+                }
+            } );
 
-            Maven maven = (Maven) container.lookup( "org.apache.maven.Maven", "default" );
+            context.setStartupTimings( startup.getTimings() );
 
             eventSpyDispatcher.onEvent( request );
 
@@ -141,31 +282,175 @@ public class Maven35Launcher
 
             eventSpyDispatcher.close();
 
-            hudsonMavenExecutionResult = new HudsonMavenExecutionResult( result );
+            for ( Throwable t : result.getExceptions() )
+            {
+                if ( t instanceof Error || t.getCause() instanceof Error )
+                {
+                    // a linkage problem or the like, don't trust this container again
+                    healthy = false;
+                }
+            }
+
+            context.finish( new HudsonMavenExecutionResult( result ) );
 
             // we don't care about cli mavenExecutionResult will be study in the plugin
             return 0;// cli.doMain( args, null );
         }
         catch ( ComponentLookupException e )
         {
+            healthy = false;
             throw new Exception( e.getMessage(), e );
         }
+        catch ( Exception | Error e )
+        {
+            healthy = false;
+            throw e;
+        }
         finally
         {
+            // normally stopped by EventSpyDispatcher#close(), but not when the build failed first
+            AsyncEventSpy.stopAll( jenkinsEventSpies );
+            if ( acquiredContainer != null )
+            {
+                releaseContainer( acquiredContainer, healthy );
+            }
             Thread.currentThread().setContextClassLoader( orig );
         }
     }
 
-    private static MavenExecutionRequest getMavenExecutionRequest( CommonCliRequest commonCliRequest, DefaultPlexusContainer container )
+    private static DefaultPlexusContainer newContainer( ClassRealm containerRealm,
+                                                        final CommonCliRequestFactory commonCliRequestFactory )
+        throws Exception
+    {
+        ContainerConfiguration cc =
+            new DefaultContainerConfiguration()
+                .setName( "maven" )
+                .setRealm( SisuIndexCache.containerRealm( containerRealm ) )
+                .setClassPathScanning( PlexusConstants.SCANNING_INDEX )
+                .setAutoWiring( true )
+                .setJSR250Lifecycle( true );
+
+        return new DefaultPlexusContainer( cc, new AbstractModule() {
+
+            @Override
+            protected void configure() {
+                bind( ILoggerFactory.class ).toInstance( commonCliRequestFactory.getSlf4jLoggerFactory() );
+            }
+        });
+    }
+
+    /**
+     * The kept container is only used again for the same realm, while that realm is still
+     * alive, no build has gone wrong in a way that may have left it broken, and it hasn't
+     * served its maximum number of builds yet.
+     */
+    private static boolean isReusable( ClassRealm containerRealm )
+    {
+        if ( reusableContainer == null || !reusableContainerHealthy
+            || reusableContainerUses >= MAX_CONTAINER_REUSE )
+        {
+            return false;
+        }
+        if ( !SisuIndexCache.isContainerRealmOf( reusableContainer.getContainerRealm(), containerRealm ) )
+        {
+            return false;
+        }
+        try
+        {
+            return containerRealm.getWorld().getRealm( containerRealm.getId() ) == containerRealm;
+        }
+        catch ( NoSuchRealmException e )
+        {
+            return false;
+        }
+    }
+
+    private static synchronized DefaultPlexusContainer acquireContainer( ClassRealm containerRealm,
+                                                                         CommonCliRequestFactory commonCliRequestFactory )
+        throws Exception
+    {
+        if ( reusableContainerInUse )
+        {
+            // another execution is running, this one gets a container of its own
+            return newContainer( containerRealm, commonCliRequestFactory );
+        }
+        if ( !isReusable( containerRealm ) )
+        {
+            if ( reusableContainer != null )
+            {
+                // also disposes the realms of the container's caches
+                reusableContainer.dispose();
+            }
+            reusableContainer = newContainer( containerRealm, commonCliRequestFactory );
+            reusableContainerUses = 0;
+            reusableContainerHealthy = true;
+            containerEventSpies = null;
+        }
+        reusableContainerInUse = true;
+        reusableContainerUses++;
+        return reusableContainer;
+    }
+
+    /**
+     * Disposes any container but the kept one, including the ones of the executions that
+     * don't reuse containers at all.
+     */
+    private static synchronized void releaseContainer( DefaultPlexusContainer container, boolean healthy )
+    {
+        if ( container != reusableContainer )
+        {
+            container.dispose();
+            return;
+        }
+        if ( !healthy )
+        {
+            reusableContainerHealthy = false;
+        }
+        else if ( FLUSH_CONTAINER_CACHES )
+        {
+            flushCaches( container );
+        }
+        reusableContainerInUse = false;
+    }
+
+    /**
+     * Plugin and project realms cached by Maven would otherwise outlive the build, including
+     * ones for SNAPSHOT plugins that may have changed by the next build.
+     */
+    private static void flushCaches( DefaultPlexusContainer container )
+    {
+        try
+        {
+            container.lookup( PluginRealmCache.class ).flush();
+            container.lookup( PluginArtifactsCache.class ).flush();
+            container.lookup( PluginDescriptorCache.class ).flush();
+            container.lookup( ExtensionRealmCache.class ).flush();
+            container.lookup( ProjectRealmCache.class ).flush();
+        }
+        catch ( ComponentLookupException e )
+        {
+            reusableContainerHealthy = false;
+        }
+    }
+
+    private static MavenExecutionRequest getMavenExecutionRequest( CommonCliRequest commonCliRequest, DefaultPlexusContainer container,
+                                                                   LauncherContext context )
         throws Exception
     {
+        ExecutionListener mavenExecutionListener = context.getMavenExecutionListener();
         MavenExecutionRequestBuilder mavenExecutionRequestBuilder =
             container.lookup( MavenExecutionRequestBuilder.class );
         MavenExecutionRequest request = mavenExecutionRequestBuilder.getMavenExecutionRequest( commonCliRequest );
         if ( mavenExecutionListener != null )
         {
-            request.setExecutionListener( mavenExecutionListener );
+            request.setExecutionListener( BatchingExecutionListener.decorate(
+                FilteringExecutionListener.decorate( mavenExecutionListener, context.getExecutionEventInterest() ) ) );
         }
+        // these see all the events, whatever the master's listener is interested in
+        MojoProfiler profiler = MojoProfiler.createIfEnabled( request.getExecutionListener() );
+        context.setMojoProfiler( profiler );
+        request.setExecutionListener( ProjectResultPublisher.decorate(
+            profiler != null ? profiler : request.getExecutionListener(), context.getProjectResultListener() ) );
         return request;
     }
 
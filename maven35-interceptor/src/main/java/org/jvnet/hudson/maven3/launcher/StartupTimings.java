@@ -0,0 +1,59 @@
+package org.jvnet.hudson.maven3.launcher;
+
+/*
+ * Copyright Olivier Lamy
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the startup stages of a launch one after another and records how long each one took.
+ *
+ * @since 1.15
+ */
+final class StartupTimings
+{
+
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+
+    <T> T run( String stage, Callable<T> task )
+        throws Exception
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return task.call();
+        }
+        finally
+        {
+            timings.put( stage, TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+        }
+    }
+
+    /**
+     * Stage name to its duration in milliseconds, in the order the stages ran.
+     */
+    Map<String, Long> getTimings()
+    {
+        return new LinkedHashMap<>( timings );
+    }
+}